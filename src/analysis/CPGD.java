@@ -1,6 +1,7 @@
 package analysis;
 
 import simulation.ConstellationAccess;
+import simulation.CoverageMatrix;
 import simulation.assets.objects.Device;
 import simulation.assets.objects.Satellite;
 import simulation.structures.Solution;
@@ -25,8 +26,24 @@ public class CPGD {
     static final String VERIFY_END_DATE = (String) properties.get("verify_end_date");
     static final String SEARCH_DATE = (String) properties.get("search_date");
     static final double TIME_STEP = Double.parseDouble((String) properties.get("time_step"));
+    static final String EXECUTION_MODE = (String) properties.get("execution_mode"); // forkjoin or virtual (Java 21+)
+    static final int THREADS = Integer.parseInt((String) properties.get("threads")); // 1: sequential, 0: all cores
+    static final boolean GEOMETRIC_PREFILTER = Boolean.parseBoolean((String) properties.get("geometric_prefilter"));
+    static final boolean ADAPTIVE_STEP = Boolean.parseBoolean((String) properties.get("adaptive_step"));
+    static final boolean COARSE_TO_FINE = Boolean.parseBoolean((String) properties.get("coarse_to_fine"));
+    static final boolean SHARE_EPHEMERIS = Boolean.parseBoolean((String) properties.get("share_ephemeris"));
+    static final double INTERPOLATION_ERROR = Double.parseDouble((String) properties.get("interpolation_error")); // [m], 0: off
+    static final boolean BATCHED_VISIBILITY = Boolean.parseBoolean((String) properties.get("batched_visibility"));
+    static final boolean INCREMENTAL_EXTENSION = Boolean.parseBoolean((String) properties.get("incremental_extension"));
+    static final String EPHEMERIS_CACHE_DIR = (String) properties.get("ephemeris_cache_dir"); // empty: off
+    static final boolean ANALYTIC_SCREENING = Boolean.parseBoolean((String) properties.get("analytic_screening")); // J2 at complexity 0-1
     static final double VISIBILITY_THRESHOLD = Double.parseDouble((String) properties.get("visibility_threshold"));
     static final double MAX_MCG = Double.parseDouble((String) properties.get("max_mcg"));
+    static final boolean EARLY_ABORT = Boolean.parseBoolean((String) properties.get("early_abort")); // Stop at the first gap > MAX_MCG
+    static final boolean COVERAGE_STATISTICS = Boolean.parseBoolean((String) properties.get("coverage_statistics")); // Extra cost
+    static final int COVERAGE_FOLD = Integer.parseInt((String) properties.get("coverage_fold")); // k-fold constraint if > 1
+    static final double MAX_FOLD_MCG = Double.parseDouble((String) properties.get("max_fold_mcg"));
+    static final boolean WORST_FIRST = Boolean.parseBoolean((String) properties.get("worst_first")); // Likely violators first
     static final int MIN_PLANES = Integer.parseInt((String) properties.get("min_planes"));
     static final int MAX_PLANES = Integer.parseInt((String) properties.get("max_planes"));
     static final int MIN_SATS_IN_PLANE = Integer.parseInt((String) properties.get("min_sats_in_plane"));
@@ -173,6 +190,22 @@ public class CPGD {
         var constellationAccess = new ConstellationAccess(START_DATE, SEARCH_DATE, TIME_STEP, VISIBILITY_THRESHOLD);
         ConstellationAccess.setDebugMode(DEBUG_MODE);
         constellationAccess.setIncludeCoverageGaps(true);
+        constellationAccess.setRetainAccesses(DEBUG_MODE);
+        constellationAccess.setGapBudget(EARLY_ABORT ? MAX_MCG : 0);
+        constellationAccess.setCoverageStatistics(COVERAGE_STATISTICS);
+        constellationAccess.setCoverageHistogram(COVERAGE_FOLD > 1);
+        var devicePriority = new DevicePriority();
+        constellationAccess.setParallelism(THREADS);
+        constellationAccess.setExecutionMode(EXECUTION_MODE);
+        constellationAccess.setGeometricPrefilter(GEOMETRIC_PREFILTER);
+        constellationAccess.setAdaptiveStep(ADAPTIVE_STEP, TIME_STEP);
+        constellationAccess.setCoarseToFine(COARSE_TO_FINE);
+        constellationAccess.setShareEphemeris(SHARE_EPHEMERIS);
+        constellationAccess.setInterpolationError(INTERPOLATION_ERROR);
+        constellationAccess.setBatchedVisibility(BATCHED_VISIBILITY);
+        constellationAccess.setIncrementalExtension(INCREMENTAL_EXTENSION);
+        constellationAccess.setEphemerisCacheDirectory(EPHEMERIS_CACHE_DIR);
+        logIgnoredSettings();
 
         tic();
 
@@ -216,16 +249,25 @@ public class CPGD {
                     if (complexity > 1) { // If the first candidate did not fail, increase scenario time
                         constellationAccess.setScenarioParams(START_DATE, END_DATE, TIME_STEP, VISIBILITY_THRESHOLD);
                     }
+                    // Screen the first levels with the analytic propagator, confirm the rest with SGP4
+                    constellationAccess.setAnalyticPropagation(ANALYTIC_SCREENING && complexity <= 1);
 
                     populateDeviceList(devices, longitudeResolution, complexity, MIN_LAT, MAX_LAT, MIN_LON, MAX_LON);
 
                     // Set the list of devices in the analyzer, compute accesses and MCG
                     constellationAccess.setDevices(devices);
+                    if (WORST_FIRST) {
+                        // Devices near previous trippers inherit their priority within two grid cells
+                        constellationAccess.setDeviceOrder(devicePriority.rank(devices, longitudeResolution / 2,
+                                2 * longitudeResolution));
+                    }
                     constellationAccess.computeDevicesPOV();
                     constellationAccess.computeMaxMCG();
                     candidateMCG = constellationAccess.getMaxMCGMinutes();
+                    logAbort(constellationAccess);
+                    devicePriority.recordTrip(constellationAccess.getAbortDevice());
 
-                    if (candidateMCG > MAX_MCG) {
+                    if (candidateMCG > MAX_MCG || exceedsFoldMCG(constellationAccess)) {
                         exceededMCG = true;
                     }
                     if (ConstellationConfiguration.equals("flower")) {
@@ -253,28 +295,37 @@ public class CPGD {
                                 devices, satellites, discarded));
                         log("SOLUTION!: " + currentPlanes + " planes with " + currentSatsInPlane + " satellites at "
                                 + currentInclination + " degrees. MCG: " + candidateMCG);
+                        logCoverage(constellationAccess);
                     } else {
                         log("SOLUTION!: NumSats " + currentSats + " NumDays " + currentDays + " NumPetals "
                                 + currentPetals + " PD " + currentPD + " PN " + currentPN + " inclination:"
                                 + currentInclination +
                                 " MCG: " + candidateMCG);
+                        logCoverage(constellationAccess);
                     }
                 }
 
             } else if (cases == 1) { // *.csv + all
                 // Set all devices, compute constellation accesses and MCG
+                constellationAccess.setAnalyticPropagation(false);
                 constellationAccess.setDevices(devices);
+                if (WORST_FIRST) {
+                    constellationAccess.setDeviceOrder(devicePriority.rank(devices, 0, 2 * longitudeResolution));
+                }
                 constellationAccess.computeDevicesPOV();
                 constellationAccess.computeMaxMCG();
                 candidateMCG = constellationAccess.getMaxMCGMinutes();
+                logAbort(constellationAccess);
+                devicePriority.recordTrip(constellationAccess.getAbortDevice());
 
                 // If a solution is found, log it
-                if (candidateMCG <= MAX_MCG) {
+                if (candidateMCG <= MAX_MCG && !exceedsFoldMCG(constellationAccess)) {
                     solutionFound = true;
                     solutions.add(new Solution(currentPlanes, currentSatsInPlane, currentInclination, candidateMCG,
                             devices, satellites, discarded));
                     log("SOLUTION!: " + currentPlanes + " planes with " + currentSatsInPlane + " satellites at "
                             + currentInclination + " degrees. MCG: " + candidateMCG);
+                    logCoverage(constellationAccess);
                 } else {
                     log("Discarded: " + currentPlanes + " planes with " + currentSatsInPlane + " satellites at "
                             + currentInclination + " degrees. Complexity level: N/A" + " > MCG: "
@@ -289,6 +340,7 @@ public class CPGD {
                     if (complexity > 1) { // If the MCG requirement is met at complexity < 1, increase scenario time
                         constellationAccess.setScenarioParams(START_DATE, END_DATE, TIME_STEP, VISIBILITY_THRESHOLD);
                     }
+                    constellationAccess.setAnalyticPropagation(ANALYTIC_SCREENING && complexity <= 1);
 
                     try {
                         // Generate initial coverage mesh (hexagonal grid over region shape) and compute
@@ -319,16 +371,23 @@ public class CPGD {
                     }
                     // Compute constellation accesses
                     constellationAccess.setDevices(devices);
+                    if (WORST_FIRST) {
+                        // Within two cells of the current mesh, which is refined at every complexity level
+                        constellationAccess.setDeviceOrder(devicePriority.rank(devices, meshResolution,
+                                2 * meshResolution));
+                    }
                     constellationAccess.computeDevicesPOV();
                     constellationAccess.computeMaxMCG();
                     candidateMCG = constellationAccess.getMaxMCGMinutes();
+                    logAbort(constellationAccess);
+                    devicePriority.recordTrip(constellationAccess.getAbortDevice());
 
                     // Log Progress
                     logProgress(currentPlanes, currentSatsInPlane, currentInclination, complexity, candidateMCG,
                             constellationAccess.getLastSimTime());
 
                     // Break early if solution not satisfied
-                    if (candidateMCG > MAX_MCG) {
+                    if (candidateMCG > MAX_MCG || exceedsFoldMCG(constellationAccess)) {
                         exceededMCG = true;
                     }
 
@@ -352,6 +411,7 @@ public class CPGD {
                             devices, satellites, discarded));
                     log("SOLUTION!: " + currentPlanes + " planes with " + currentSatsInPlane + " satellites at "
                             + currentInclination + " degrees. MCG: " + candidateMCG);
+                    logCoverage(constellationAccess);
                 }
             }
             // Move to next constellation candidate
@@ -407,7 +467,6 @@ public class CPGD {
                                     }
                                 }
                             }
-                        }
                     }
 
                 }
@@ -418,6 +477,7 @@ public class CPGD {
         Reports.saveSolutionCSV(solutions, OUTPUT_PATH + RUN_DATE + CSV_EXTENSION);
 
         endLog(solutions);
+        constellationAccess.shutdown();
 
     }
 
@@ -631,6 +691,65 @@ public class CPGD {
                 + (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / (1024 * 1024) + " MB");
     }
 
+    /**
+     * This method prints the access search settings that are overridden by others in config.properties
+     **/
+    private static void logIgnoredSettings() {
+        if (BATCHED_VISIBILITY && (GEOMETRIC_PREFILTER || ADAPTIVE_STEP || COARSE_TO_FINE
+                || ConstellationAccess.EXECUTION_VIRTUAL.equalsIgnoreCase(EXECUTION_MODE))) {
+            System.out.println("batched_visibility is set: execution_mode, geometric_prefilter, adaptive_step and "
+                    + "coarse_to_fine are not used");
+        } else if (SHARE_EPHEMERIS && (ADAPTIVE_STEP || COARSE_TO_FINE)) {
+            System.out.println("share_ephemeris is set: adaptive_step and coarse_to_fine are not used");
+        } else if (ADAPTIVE_STEP && COARSE_TO_FINE) {
+            System.out.println("adaptive_step is set: coarse_to_fine is not used");
+        }
+    }
+
+    /**
+     * This method checks the k-fold MCG constraint, if any, on the last evaluation and logs a violation
+     **/
+    private static boolean exceedsFoldMCG(ConstellationAccess constellationAccess) {
+        if (COVERAGE_FOLD <= 1 || constellationAccess.isAborted()) {
+            return false;
+        }
+        double foldMCG = constellationAccess.getFoldMCGMinutes(COVERAGE_FOLD);
+        if (foldMCG > MAX_FOLD_MCG) {
+            log(COVERAGE_FOLD + "-fold MCG: " + foldMCG + " > " + MAX_FOLD_MCG);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * This method logs the coverage statistics of the last evaluation, if coverage statistics are enabled
+     **/
+    private static void logCoverage(ConstellationAccess constellationAccess) {
+        CoverageMatrix coverageMatrix = constellationAccess.getCoverageMatrix();
+        if (coverageMatrix == null) {
+            return;
+        }
+        double minCoverage = 100;
+        double maxRevisit = 0;
+        for (int d = 0; d < coverageMatrix.getDevices(); d++) {
+            minCoverage = Math.min(minCoverage, coverageMatrix.getCoveragePercent(d, 1));
+            maxRevisit = Math.max(maxRevisit, coverageMatrix.getMeanGap(d, 1));
+        }
+        log("Coverage: worst device " + minCoverage + "% of the steps, mean revisit up to "
+                + maxRevisit / (60.0 * 1000.0) + " minutes");
+    }
+
+    /**
+     * This method logs the device that stopped the last evaluation early, if any
+     **/
+    private static void logAbort(ConstellationAccess constellationAccess) {
+        Device device = constellationAccess.getAbortDevice();
+        if (device != null) {
+            log("Early abort: device " + device.getId() + " (" + device.getLat() + ", " + device.getLon()
+                    + ") has a gap of " + constellationAccess.getAbortGap() / (60.0 * 1000.0) + " minutes");
+        }
+    }
+
     private static void logProgressFlower(int currentSats, int currentDays, int currentPetals,
             int currentPD, int currentPN, double currentInclination, int complexity, double mcg, double simTime) {
         // Get runtime memory
@@ -659,20 +778,6 @@ public class CPGD {
         pendingLog.clear();
     }
 
-    /**
-     * This method returns the maximum Lambda, which is defined as the maximum Earth
-     * Central Angle or half of a satellite's "cone FOV" over the surface of the
-     * Earth.
-     **/
-    public static double getLambdaMax(double semiMajorAxis, double eccentricity, double visibilityThreshold) {
-
-        double hMax = ((1 + eccentricity) * semiMajorAxis) - Utils.EARTH_RADIUS;
-        double etaMax = Math.asin(
-                (Utils.EARTH_RADIUS * Math.cos(Math.toRadians(visibilityThreshold))) / (Utils.EARTH_RADIUS + hMax));
-        return 90 - visibilityThreshold - Math.toDegrees(etaMax);
-
-    }
-
     /**
      * This is a numerical method to obtain the inclination at which the percentage
      * of coverage at the maximum latitude equals the percentage of coverage at the
@@ -683,7 +788,7 @@ public class CPGD {
 
         double inc = 55, pLo, pLm; // inclination, percentage at zero latitude, percentage at maximum latitude
 
-        double lam = Math.toRadians(getLambdaMax(semiMajorAxis, eccentricity, visibilityThreshold));
+        double lam = Math.toRadians(Utils.getLambdaMax(semiMajorAxis, eccentricity, visibilityThreshold));
         double lat = Math.toRadians(latMax);
 
         double inc0 = 1;
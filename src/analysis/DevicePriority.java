@@ -0,0 +1,129 @@
+package analysis;
+
+import simulation.assets.objects.Device;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * This class ranks the devices of a candidate so the ones most likely to exceed the MCG are evaluated first. The rank
+ * favours, in decreasing weight, locations close to the devices that stopped previous candidates, devices on the edge
+ * of the grid or region, and high latitudes. Past trippers are kept in a small list whose weights decay with every
+ * new trip, so the ranking follows the weak spots of the constellations currently being searched
+ **/
+public class DevicePriority {
+
+    private static final int CAPACITY = 16;         // Trippers remembered
+    private static final double DECAY = 0.5;        // Weight kept by older trippers on every new trip
+    private static final double TRIP_WEIGHT = 4.0;
+    private static final double BOUNDARY_WEIGHT = 1.0;
+
+    private final List<double[]> trippers = new ArrayList<>();  // lat, lon, weight
+
+    /**
+     * Records the device that stopped the last evaluation, if any
+     **/
+    public void recordTrip(Device device) {
+        if (device == null) {
+            return;
+        }
+        for (double[] tripper : trippers) {
+            tripper[2] *= DECAY;
+        }
+        for (double[] tripper : trippers) {
+            if (tripper[0] == device.getLat() && tripper[1] == device.getLon()) {
+                tripper[2] += 1;
+                return;
+            }
+        }
+        trippers.add(new double[]{device.getLat(), device.getLon(), 1});
+        if (trippers.size() > CAPACITY) {
+            trippers.remove(trippers.stream().min(Comparator.comparingDouble(t -> t[2])).get());
+        }
+    }
+
+    /**
+     * Returns the positions of the devices sorted by decreasing priority, ties in list order. Devices within margin
+     * degrees of the extreme latitudes of the list, or of the sides of the empty longitude arc that bounds a regional
+     * list, are boundary devices. A list spread around the globe has no longitude boundary, so the columns next to
+     * the antimeridian are not favoured. Devices within radius degrees of a tripper inherit part of its weight; the
+     * radius is given on every call so it can follow the current grid resolution
+     **/
+    public int[] rank(List<Device> devices, double margin, double radius) {
+
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        for (Device device : devices) {
+            minLat = Math.min(minLat, device.getLat());
+            maxLat = Math.max(maxLat, device.getLat());
+        }
+        double[] edges = longitudeEdges(devices);
+
+        double[] score = new double[devices.size()];
+        for (int d = 0; d < devices.size(); d++) {
+            Device device = devices.get(d);
+            score[d] = Math.abs(device.getLat()) / 90.0;
+            if (device.getLat() - minLat <= margin || maxLat - device.getLat() <= margin || (edges != null
+                    && (Math.abs(wrap(device.getLon() - edges[0])) <= margin
+                    || Math.abs(wrap(device.getLon() - edges[1])) <= margin))) {
+                score[d] += BOUNDARY_WEIGHT;
+            }
+            for (double[] tripper : trippers) {
+                double distance = Math.hypot(device.getLat() - tripper[0],
+                        wrap(device.getLon() - tripper[1]) * Math.cos(Math.toRadians(tripper[0])));
+                if (distance < radius) {
+                    score[d] += TRIP_WEIGHT * tripper[2] * (1 - distance / radius);
+                }
+            }
+        }
+
+        Integer[] order = new Integer[devices.size()];
+        for (int d = 0; d < order.length; d++) {
+            order[d] = d;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(score[b], score[a]));    // Stable, ties keep list order
+
+        int[] ranked = new int[order.length];
+        for (int d = 0; d < order.length; d++) {
+            ranked[d] = order[d];
+        }
+        return ranked;
+
+    }
+
+    /**
+     * Returns the western and eastern longitudes of a regional list, taken across its widest empty longitude arc,
+     * which may contain the antimeridian. Returns null if that arc is no wider than twice the mean spacing of the
+     * longitudes, that is if the list goes around the globe
+     **/
+    private static double[] longitudeEdges(List<Device> devices) {
+
+        double[] longitudes = devices.stream().mapToDouble(device -> wrap(device.getLon())).distinct().sorted()
+                .toArray();
+        if (longitudes.length < 2) {
+            return null;
+        }
+        int widest = longitudes.length - 1;     // Gap from the last longitude around to the first
+        double widestGap = longitudes[0] + 360 - longitudes[widest];
+        for (int i = 0; i + 1 < longitudes.length; i++) {
+            if (longitudes[i + 1] - longitudes[i] > widestGap) {
+                widest = i;
+                widestGap = longitudes[i + 1] - longitudes[i];
+            }
+        }
+        if (widestGap <= 2 * 360.0 / longitudes.length) {
+            return null;
+        }
+        return new double[]{longitudes[(widest + 1) % longitudes.length], longitudes[widest]};
+
+    }
+
+    /**
+     * Wraps a longitude or a longitude difference into [-180, 180)
+     **/
+    private static double wrap(double longitude) {
+        return longitude - 360 * Math.floor((longitude + 180) / 360);
+    }
+
+}
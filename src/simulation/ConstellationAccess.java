@@ -2,16 +2,37 @@ package simulation;
 
 import simulation.assets.objects.Device;
 import simulation.assets.objects.Satellite;
-import simulation.structures.Event;
+import simulation.propagation.EphemerisDiskCache;
+import simulation.propagation.InterpolationReport;
+import simulation.propagation.ItrfEphemeris;
+import simulation.propagation.PropagatorPool;
+import simulation.propagation.SatelliteStateCache;
 import simulation.structures.Interval;
+import simulation.structures.IntervalIndex;
 import simulation.utils.Reports;
 import simulation.utils.Utils;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class ConstellationAccess {
 
+    public static final String EXECUTION_FORK_JOIN = "forkjoin";
+    public static final String EXECUTION_VIRTUAL = "virtual";
+    private static final int BUDGET_CHUNKS = 8;     // Batched device chunks checked against the gap budget
+
     private final Simulation simulation = new Simulation();
     private List<Device> devices;
     private List<Satellite> satellites;
@@ -19,9 +40,37 @@ public class ConstellationAccess {
     private List<Interval> combinedIntervals = new ArrayList<>();
     private List<Interval> allAccesses = new ArrayList<>();
     private boolean includeCoverageGaps = false;
+    private boolean retainAccesses = false;
+    private final CoverageGapAccumulator gapAccumulator = new CoverageGapAccumulator();
+    private boolean gapsAccumulated = false;
+    private double gapBudget = 0;   // ms, 0 if disabled
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final AtomicInteger abortDevice = new AtomicInteger(-1);
+    private volatile long abortGap = -1;
+    private boolean coverageStatistics = false;
+    private CoverageMatrix coverageMatrix;
+    private boolean useCoverageHistogram = false;
+    private final CoverageHistogram coverageHistogram = new CoverageHistogram();
+    private CoverageSink coverageSink = gapAccumulator;
+    private int[] deviceOrder;      // Positions in the device list, in evaluation order
     private int povOption = 0;
     private double maxMCG = Double.MAX_VALUE;
     private long lastSimTime = 0;
+    private boolean geometricPrefilter = false;
+    private final AtomicInteger skippedPairs = new AtomicInteger();
+    private boolean shareEphemeris = false;
+    private double interpolationError = 0;
+    private boolean batchedVisibility = false;
+    private boolean incrementalExtension = false;
+    private boolean analyticPropagation = false;
+    private final Map<String, PairState[]> pairStates = new ConcurrentHashMap<>();  // Per device location, per satellite
+    private SatelliteStateCache stateCache;
+    private EphemerisDiskCache diskCache;
+    private int parallelism = 1;
+    private ForkJoinPool pool;
+    private String executionMode = EXECUTION_FORK_JOIN;
+    private ExecutorService virtualExecutor;
+    private final ThreadLocal<Simulation> workerSimulation = ThreadLocal.withInitial(Simulation::new);
     public static boolean DEBUG_MODE = false;
     public ConstellationAccess() {
 
@@ -50,6 +99,319 @@ public class ConstellationAccess {
         this.povOption = povOption >= 1 ? 1 : 0;
     }
 
+    /**
+     * Sets the number of worker threads used by computeDevicesPOV. 1 runs sequentially, 0 or less uses every
+     * available processor
+     **/
+    public void setParallelism(int parallelism) {
+        int threads = parallelism <= 0 ? Runtime.getRuntime().availableProcessors() : parallelism;
+        if (pool != null && threads != this.parallelism) {
+            pool.shutdown();
+            pool = null;
+        }
+        this.parallelism = threads;
+    }
+
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Stops the worker threads of the fork-join pool and of the virtual thread executor, if any. The pool is created
+     * again if the analyzer is used afterwards, while the virtual thread mode has to be selected again
+     **/
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        if (virtualExecutor != null) {
+            virtualExecutor.shutdown();
+            virtualExecutor = null;
+            executionMode = EXECUTION_FORK_JOIN;
+        }
+    }
+
+    private ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
+
+    /**
+     * Selects how computeDevicesPOV runs the pairs when not batched. EXECUTION_FORK_JOIN uses the fixed pool of
+     * setParallelism. EXECUTION_VIRTUAL spreads the device-satellite pairs over setParallelism virtual threads, so
+     * devices with many long passes do not hold a pool worker while others wait; it needs a Java 21+ runtime and
+     * falls back to the fork-join pool otherwise. With a parallelism of 1 both run sequentially, and either way the
+     * results are merged in device order
+     **/
+    public void setExecutionMode(String executionMode) {
+        if (virtualExecutor != null) {
+            virtualExecutor.shutdown();
+            virtualExecutor = null;
+        }
+        this.executionMode = EXECUTION_VIRTUAL.equalsIgnoreCase(executionMode) ? EXECUTION_VIRTUAL : EXECUTION_FORK_JOIN;
+        if (this.executionMode.equals(EXECUTION_VIRTUAL)) {
+            try {   // Looked up at runtime, so the code still builds and runs on Java 17
+                virtualExecutor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.out.println("Virtual threads need Java 21 or later, using the fork-join pool");
+                this.executionMode = EXECUTION_FORK_JOIN;
+            }
+        }
+    }
+
+    public String getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * When set, device-satellite pairs that can never see each other (device latitude beyond the satellite's
+     * inclination plus its footprint) are not simulated, and their no-access interval is reported directly
+     **/
+    public void setGeometricPrefilter(boolean geometricPrefilter) {
+        this.geometricPrefilter = geometricPrefilter;
+    }
+
+    /**
+     * Returns the number of pairs skipped by the geometric pre-filter in the last computation
+     **/
+    public int getSkippedPairs() {
+        return skippedPairs.get();
+    }
+
+    /**
+     * When set, each satellite is propagated once per scenario and every device is checked against the shared
+     * ephemeris instead of re-propagating the satellite
+     **/
+    public void setShareEphemeris(boolean shareEphemeris) {
+        this.shareEphemeris = shareEphemeris;
+    }
+
+    /**
+     * Sets the maximum position error in meters allowed to the shared ephemeris. Above 0, satellites are sampled at
+     * a coarse step and every state is Hermite-interpolated instead of propagated. Implies setShareEphemeris(true)
+     **/
+    public void setInterpolationError(double interpolationError) {
+        this.interpolationError = Math.max(0, interpolationError);
+        if (this.interpolationError > 0) {
+            this.shareEphemeris = true;
+        }
+    }
+
+    /**
+     * Sets a directory where the shared ephemerides are persisted and memory-mapped back on later runs, null or
+     * empty to disable. Implies setShareEphemeris(true)
+     **/
+    public void setEphemerisCacheDirectory(String directory) {
+        this.diskCache = directory == null || directory.isEmpty() ? null : new EphemerisDiskCache(directory);
+        if (this.diskCache != null) {
+            this.shareEphemeris = true;
+        }
+        this.stateCache = null;
+    }
+
+    /**
+     * When set, each satellite is stepped once over the shared ephemeris and checked against every device in a single
+     * batched pass (see VisibilityKernel), instead of one Simulation per pair. Implies setShareEphemeris(true).
+     * The batched pass takes precedence over the per-pair options: the execution mode, the geometric pre-filter,
+     * the adaptive step and the coarse-to-fine search are not used while it is set
+     **/
+    public void setBatchedVisibility(boolean batchedVisibility) {
+        this.batchedVisibility = batchedVisibility;
+        if (batchedVisibility) {
+            this.shareEphemeris = true;
+        }
+    }
+
+    /**
+     * When set, the access state of every pair is kept between runs. Moving the scenario end forward with
+     * setScenarioParams then only simulates the new time span, carrying the contacts open at the previous end, and
+     * pairs already computed over the current scenario are not simulated again. Pairs are matched by device location
+     **/
+    public void setIncrementalExtension(boolean incrementalExtension) {
+        this.incrementalExtension = incrementalExtension;
+        this.pairStates.clear();
+    }
+
+    /**
+     * When set, satellites are propagated with the closed-form J2KeplerPropagator instead of SGP4, in every access
+     * path and in the shared ephemeris. Meant for screening candidates, see J2KeplerPropagator for its accuracy.
+     * Switching the mode drops the shared ephemeris and the stored pair states
+     **/
+    public void setAnalyticPropagation(boolean analyticPropagation) {
+        if (this.analyticPropagation != analyticPropagation) {
+            this.stateCache = null;
+            this.pairStates.clear();
+        }
+        this.analyticPropagation = analyticPropagation;
+        simulation.setAnalyticPropagation(analyticPropagation);
+    }
+
+    public boolean isAnalyticPropagation() {
+        return analyticPropagation;
+    }
+
+    /**
+     * When set, pairs are searched with footprint-aware adaptive steps instead of the fixed ElevationDetector
+     * max-check. Passes longer than minPassDuration seconds (0: the scenario step) are never missed, shorter ones
+     * may be, so results can differ from the detector. Not used while the shared ephemeris or the batched pass is set
+     **/
+    public void setAdaptiveStep(boolean adaptiveStep, double minPassDuration) {
+        simulation.setAdaptiveStep(adaptiveStep, minPassDuration);
+    }
+
+    /**
+     * When set, pairs are searched in two passes, a coarse elevation sweep over the scenario grid followed by Brent
+     * refinement of the crossings only, instead of with the ElevationDetector (see Simulation.setCoarseToFine).
+     * Not used while the shared ephemeris, the batched pass or the adaptive step is set
+     **/
+    public void setCoarseToFine(boolean coarseToFine) {
+        simulation.setCoarseToFine(coarseToFine);
+    }
+
+    /**
+     * When set, computeDevicesPOV keeps every combined interval of every device in getAllAccesses, for reports and
+     * debugging. Otherwise only the per-device gap state needed by computeMaxMCG is kept
+     **/
+    public void setRetainAccesses(boolean retainAccesses) {
+        this.retainAccesses = retainAccesses;
+    }
+
+    /**
+     * Returns the online gap state of the last computeDevicesPOV run, one slot per device in list order
+     **/
+    public CoverageGapAccumulator getGapAccumulator() {
+        return gapAccumulator;
+    }
+
+    /**
+     * Sets the largest coverage gap, in minutes, a candidate may have. computeDevicesPOV stops every worker as soon
+     * as the combined accesses of one device show a longer gap, since the candidate is then already rejected. The
+     * batched pass checks once per chunk of devices. Values of 0 or less disable the check
+     **/
+    public void setGapBudget(double maxGapMinutes) {
+        this.gapBudget = maxGapMinutes > 0 ? maxGapMinutes * 60.0 * 1000.0 : 0;
+    }
+
+    /**
+     * Stops the computeDevicesPOV run in progress. Pairs already running finish, the rest are skipped, and
+     * computeMaxMCG reports Double.MAX_VALUE, as nothing is known of the skipped devices
+     **/
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * Returns true if the last computeDevicesPOV run was stopped before every device was computed
+     **/
+    public boolean isAborted() {
+        return cancelled.get();
+    }
+
+    /**
+     * Returns the device whose gap exceeded the budget in the last run, null if none did
+     **/
+    public Device getAbortDevice() {
+        int d = abortDevice.get();
+        return d < 0 ? null : devices.get(d);
+    }
+
+    /**
+     * Returns the gap, in ms, that exceeded the budget in the last run, -1 if none did
+     **/
+    public long getAbortGap() {
+        return abortDevice.get() < 0 ? -1 : abortGap;
+    }
+
+    /**
+     * When set, computeDevicesPOV also fills a bit-packed CoverageMatrix at the scenario step, for coverage percent
+     * and revisit statistics. It is an add-on: the intervals, the sweep and the MCG are computed as without it, so
+     * it costs extra time and one bit per device, step and counter plane of memory
+     **/
+    public void setCoverageStatistics(boolean coverageStatistics) {
+        this.coverageStatistics = coverageStatistics;
+    }
+
+    /**
+     * When set, computeDevicesPOV also builds a CoverageHistogram in the same sweep as the MCG: the time each device
+     * spends at every coverage level and its longest gap at every level, for k-fold constraints
+     **/
+    public void setCoverageHistogram(boolean useCoverageHistogram) {
+        this.useCoverageHistogram = useCoverageHistogram;
+    }
+
+    /**
+     * Returns the coverage histogram of the last computeDevicesPOV run, empty if it was not enabled
+     **/
+    public CoverageHistogram getCoverageHistogram() {
+        return coverageHistogram;
+    }
+
+    /**
+     * Returns the longest gap over every device, in minutes, with coverage meaning at least k satellites in view.
+     * Taken from the coverage histogram, which must be enabled
+     **/
+    public double getFoldMCGMinutes(int k) {
+        long gap = coverageHistogram.getMaxGap(k);
+        return Math.round((gap / (60.0 * 1000.0)) * 100000.0) / 100000.0;
+    }
+
+    /**
+     * Returns the coverage matrix of the last computeDevicesPOV run, null if it was not enabled
+     **/
+    public CoverageMatrix getCoverageMatrix() {
+        return coverageMatrix;
+    }
+
+    /**
+     * Sets the order devices are evaluated in, as positions in the device list, most likely to exceed the gap budget
+     * first. Positions out of range or repeated are ignored and missing ones are evaluated last, in list order. The
+     * accesses are still reported in list order. Null evaluates the list in order
+     **/
+    public void setDeviceOrder(int[] deviceOrder) {
+        this.deviceOrder = deviceOrder;
+    }
+
+    /**
+     * Returns the device evaluation order for the current device list, a permutation of its positions
+     **/
+    private int[] schedule() {
+
+        int[] order = new int[devices.size()];
+        boolean[] scheduled = new boolean[devices.size()];
+        int n = 0;
+        if (deviceOrder != null) {
+            for (int d : deviceOrder) {
+                if (d >= 0 && d < order.length && !scheduled[d]) {
+                    scheduled[d] = true;
+                    order[n++] = d;
+                }
+            }
+        }
+        for (int d = 0; d < order.length; d++) {
+            if (!scheduled[d]) {
+                order[n++] = d;
+            }
+        }
+        return order;
+
+    }
+
+    /**
+     * Concatenates per-device results in device list order, skipping devices that were never evaluated
+     **/
+    private static List<Interval> inDeviceOrder(List<List<Interval>> byDevice) {
+        List<Interval> accesses = new ArrayList<>();
+        for (List<Interval> deviceAccesses : byDevice) {
+            if (deviceAccesses != null) {
+                accesses.addAll(deviceAccesses);
+            }
+        }
+        return accesses;
+    }
+
     public void setIncludeCoverageGaps(boolean includeCoverageGaps) {
         this.includeCoverageGaps = includeCoverageGaps;
     }
@@ -61,6 +423,8 @@ public class ConstellationAccess {
     public void setAssets(List<Device> devices, List<Satellite> satellites) {
         this.devices = devices;
         this.satellites = satellites;
+        this.stateCache = null;
+        this.pairStates.clear();
     }
 
     public void setDevices(List<Device> devices) {
@@ -69,6 +433,8 @@ public class ConstellationAccess {
 
     public void setSatellites(List<Satellite> satellites) {
         this.satellites = satellites;
+        this.stateCache = null;
+        this.pairStates.clear();
     }
 
     public void addDevice(Device device) {
@@ -77,9 +443,20 @@ public class ConstellationAccess {
 
     public void addSatellite(Satellite satellite) {
         satellites.add(satellite);
+        this.stateCache = null;
+        this.pairStates.clear();
     }
 
+    /**
+     * Sets the scenario time span, step and visibility threshold. With incremental extension, the pair states are
+     * kept only if the new scenario extends the current one (same start, step and threshold, same or later end)
+     **/
     public void setScenarioParams(String start, String end, double step, double th) {
+        if (!start.equals(simulation.getStartTime()) || step != simulation.getStep()
+                || Math.toDegrees(Math.toRadians(th)) != simulation.getVisibilityThreshold()
+                || Utils.stamp2unix(end) < simulation.getEndTimeUnix()) {
+            pairStates.clear();
+        }
         simulation.setParams(start, end, step, th);
     }
 
@@ -91,6 +468,18 @@ public class ConstellationAccess {
         return allAccesses;
     }
 
+    /**
+     * Builds a time index over the accesses of the last run, for stabbing and window queries. The index is a
+     * snapshot, so build it once per run and reuse it. Device point of view accesses are only kept if retained, so
+     * the index of a device point of view run without setRetainAccesses(true) cannot be built
+     **/
+    public IntervalIndex buildAccessIndex() {
+        if (gapsAccumulated && !retainAccesses) {
+            throw new IllegalStateException("Accesses were not retained, call setRetainAccesses(true) before the run");
+        }
+        return new IntervalIndex(allAccesses);
+    }
+
     public List<Interval> getCurrentIntervals() {
         return currentIntervals;
     }
@@ -119,201 +508,494 @@ public class ConstellationAccess {
 
         allAccesses.clear();
         currentIntervals.clear();
+        gapsAccumulated = false;
+        cancelled.set(false);
+        abortDevice.set(-1);
+        abortGap = -1;
 
         if (devices.isEmpty() || satellites.isEmpty()) {
             System.out.println("Check assets!");
             return;
         }
 
-        for (Device device : devices) {
-
-            currentIntervals.clear();
-
-            for (Satellite satellite : satellites) {
-                simulation.setAssets(device, satellite);
-                simulation.computeAccess();
-                synchronized (simulation) {
-                    if (simulation.getIntervals().isEmpty()) {
-                        allAccesses.add(new Interval(Utils.stamp2unix(simulation.getStartTime()), Utils.stamp2unix(simulation.getEndTime()),
-                                new ArrayList<>(device.getId()), new ArrayList<>()));
-                    } else {
-                        currentIntervals.addAll(simulation.getIntervals());
-                    }
+        prepareStateCache();
+        skippedPairs.set(0);
+        gapAccumulator.reset(devices.size());
+        coverageHistogram.reset(useCoverageHistogram ? devices.size() : 0, satellites.size(),
+                simulation.getEndTimeUnix() - simulation.getStartTimeUnix());
+        coverageSink = useCoverageHistogram ? CoverageSink.of(gapAccumulator, coverageHistogram) : gapAccumulator;
+        coverageMatrix = coverageStatistics ? new CoverageMatrix(devices.size(), satellites.size(),
+                simulation.getStartTimeUnix(), simulation.getEndTimeUnix(), simulation.getStep()) : null;
+
+        if (batchedVisibility) {
+            allAccesses.addAll(computeDevicesBatched());
+        } else if (virtualExecutor != null && parallelism > 1) {
+            allAccesses.addAll(computeDevicesVirtual());
+        } else if (parallelism > 1) {
+            allAccesses.addAll(computeDevicesParallel());
+        } else {
+            List<List<Interval>> byDevice = new ArrayList<>(Collections.nCopies(devices.size(), null));
+            for (int d : schedule()) {
+                if (cancelled.get()) {
+                    break;
+                }
+                Device device = devices.get(d);
+                List<List<Interval>> perSatellite = new ArrayList<>(satellites.size());
+                for (int s = 0; s < satellites.size() && !cancelled.get(); s++) {
+                    perSatellite.add(isNeverVisible(device, satellites.get(s)) ? new ArrayList<>() : computePair(device, s));
                 }
+                byDevice.set(d, combineDeviceAccesses(d, perSatellite));
             }
-
-            currentIntervals.sort((i1, i2) -> (int) (i1.getStart() - i2.getStart()));
-
-            allAccesses.addAll(computeDevices2Constellation());
-
+            allAccesses.addAll(inDeviceOrder(byDevice));
         }
+        gapsAccumulated = true;
         if (DEBUG_MODE) {
             Reports.printAccessReport(allAccesses);
+            System.out.println(PropagatorPool.getShared());
         }
 
         lastSimTime = System.currentTimeMillis() - t0;
 
     }
 
-    public void computeSatellitesPOV() {
-
-        setPovOption(1);
-
-        allAccesses.clear();
-        currentIntervals.clear();
+    /**
+     * Builds or reuses the shared satellite state cache for the current scenario, if enabled
+     **/
+    private void prepareStateCache() {
 
-        if (devices.isEmpty() || satellites.isEmpty()) {
-            System.out.println("Check assets!");
+        if (!shareEphemeris) {
+            stateCache = null;
+            simulation.setStateCache(null);
             return;
         }
 
+        if (stateCache != null && stateCache.getMaxPositionError() == interpolationError
+                && stateCache.canExtendTo(simulation.getStartTime(), simulation.getEndTime(), simulation.getStep())) {
+            stateCache = stateCache.extendTo(simulation.getEndTime());
+        } else if (stateCache == null || stateCache.getMaxPositionError() != interpolationError
+                || !stateCache.covers(simulation.getStartTime(), simulation.getEndTime(), simulation.getStep())) {
+            stateCache = new SatelliteStateCache(simulation.getStartTime(), simulation.getEndTime(), simulation.getStep(),
+                    interpolationError);
+            stateCache.setDiskCache(diskCache);
+            stateCache.setAnalytic(analyticPropagation);
+        }
+        simulation.setStateCache(stateCache);
+
+    }
+
+    /**
+     * Validates the interpolated ephemeris of every satellite against full SGP4 propagation
+     **/
+    public List<InterpolationReport> validateInterpolation() {
+
+        prepareStateCache();
+
+        List<InterpolationReport> reports = new ArrayList<>();
+        if (stateCache == null || !stateCache.isInterpolated()) {
+            return reports;
+        }
         for (Satellite satellite : satellites) {
+            reports.add(stateCache.validate(satellite));
+        }
+        return reports;
 
-            currentIntervals.clear();
+    }
 
-            for (Device device : devices) {
-                simulation.setAssets(device, satellite);
-                simulation.computeAccess();
-                synchronized (simulation) {
-                    if (simulation.getIntervals().isEmpty()) {
-                        allAccesses.add(new Interval(Utils.stamp2unix(simulation.getStartTime()), Utils.stamp2unix(simulation.getEndTime()),
-                                new ArrayList<>(device.getId()), new ArrayList<>()));
-                    } else {
-                        currentIntervals.addAll(simulation.getIntervals());
-                    }
+    /**
+     * Distributes every device-satellite pair over a work-stealing pool. Each worker thread owns its own Simulation.
+     * Devices are submitted in evaluation order, and the per-device results are joined in device order so the output
+     * matches the sequential loop
+     **/
+    private List<Interval> computeDevicesParallel() {
+
+        ForkJoinPool pool = getPool();
+        if (stateCache != null) {   // Propagate the satellites concurrently before the devices start reading them
+            pool.submit(() -> satellites.parallelStream().forEach(stateCache::getEphemeris)).join();
+        }
+
+        List<ForkJoinTask<List<Interval>>> tasks = new ArrayList<>(Collections.nCopies(devices.size(), null));
+        for (int d : schedule()) {
+            tasks.set(d, pool.submit(new DeviceAccessTask(d)));
+        }
+
+        List<Interval> accesses = new ArrayList<>();
+        for (ForkJoinTask<List<Interval>> task : tasks) {
+            accesses.addAll(task.join());
+        }
+        return accesses;
+
+    }
+
+    /**
+     * Computes every device against each satellite in one batched pass per satellite. Satellites run on the pool when
+     * parallelism is enabled. With a gap budget, the devices are batched in chunks in evaluation order and each chunk
+     * is combined and checked before the next one is computed, so an abort skips the remaining chunks. The devices are
+     * combined in evaluation order and reported in list order, as in the other paths
+     **/
+    private List<Interval> computeDevicesBatched() {
+
+        VisibilityKernel kernel = new VisibilityKernel(devices);
+        double th = Math.toRadians(simulation.getVisibilityThreshold());
+        boolean interpolated = stateCache.isInterpolated();
+
+        int[] order = schedule();
+        int chunkSize = gapBudget > 0 ? Math.max(1, (order.length + BUDGET_CHUNKS - 1) / BUDGET_CHUNKS) : order.length;
+        List<List<Interval>> byDevice = new ArrayList<>(Collections.nCopies(devices.size(), null));
+        for (int from = 0; from < order.length && !cancelled.get(); from += chunkSize) {
+            List<Integer> chunk = new ArrayList<>();
+            for (int k = from; k < Math.min(from + chunkSize, order.length); k++) {
+                chunk.add(order[k]);
+            }
+
+            List<List<List<Interval>>> bySatellite;   // [satellite][device in chunk]
+            if (parallelism > 1) {
+                bySatellite = getPool().submit(() -> IntStream.range(0, satellites.size()).parallel()
+                        .mapToObj(s -> computeSatelliteBatched(kernel, s, th, interpolated, chunk))
+                        .collect(Collectors.toList())).join();
+            } else {
+                bySatellite = new ArrayList<>(satellites.size());
+                for (int s = 0; s < satellites.size() && !cancelled.get(); s++) {
+                    bySatellite.add(computeSatelliteBatched(kernel, s, th, interpolated, chunk));
+                }
+            }
+
+            for (int k = 0; k < chunk.size() && !cancelled.get(); k++) {
+                List<List<Interval>> deviceIntervals = new ArrayList<>(satellites.size());
+                for (List<List<Interval>> satelliteIntervals : bySatellite) {
+                    deviceIntervals.add(satelliteIntervals.get(k));
                 }
+                byDevice.set(chunk.get(k), combineDeviceAccesses(chunk.get(k), deviceIntervals));
             }
+        }
+        return inDeviceOrder(byDevice);
 
-            currentIntervals.sort((i1, i2) -> (int) (i1.getStart() - i2.getStart()));
+    }
 
-            allAccesses.addAll(computeConstellation2Devices());
+    /**
+     * Computes the devices at the given list positions against one satellite with the kernel, returning their
+     * intervals in the same order. With incremental extension, devices are grouped by the time their pair state ends
+     * and each group is only stepped from there
+     **/
+    private List<List<Interval>> computeSatelliteBatched(VisibilityKernel kernel, int satelliteIndex, double th,
+                                                         boolean interpolated, List<Integer> chunk) {
+
+        Satellite satellite = satellites.get(satelliteIndex);
+        if (cancelled.get()) {
+            return Collections.emptyList();
+        }
+        ItrfEphemeris ephemeris = stateCache.getEphemeris(satellite);
+        if (!incrementalExtension) {
+            VisibilityKernel chunkKernel = chunk.size() == devices.size() ? kernel : kernel.subset(chunk);
+            return chunkKernel.computeAccess(ephemeris, satellite.getId(), th, simulation.getStep(), interpolated);
+        }
+
+        List<List<Interval>> intervals = new ArrayList<>(chunk.size());
+        List<PairState> states = new ArrayList<>(chunk.size());
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();  // Positions in the chunk
+        for (int k = 0; k < chunk.size(); k++) {
+            Device device = devices.get(chunk.get(k));
+            PairState state = getPairState(device, satelliteIndex);
+            if (state != null && !stateCache.contains(state.end, simulation.getEndTime(), simulation.getStep())) {
+                state = null;   // Not on the cache grid, compute the pair from the start
+            }
+            states.add(state);
+            intervals.add(state != null ? state.getIntervals(device.getId()) : new ArrayList<>());
+            String start = state != null ? state.end : simulation.getStartTime();
+            groups.computeIfAbsent(start, key -> new ArrayList<>()).add(k);
+        }
 
+        for (Map.Entry<String, List<Integer>> group : groups.entrySet()) {
+            if (group.getKey().equals(simulation.getEndTime())) {   // Already computed over the current scenario
+                continue;
+            }
+            List<Integer> members = group.getValue();
+            List<Integer> memberDevices = new ArrayList<>(members.size());
+            long[] openContacts = new long[members.size()];
+            for (int m = 0; m < members.size(); m++) {
+                PairState state = states.get(members.get(m));
+                memberDevices.add(chunk.get(members.get(m)));
+                openContacts[m] = state != null ? state.openContact : -1;
+            }
+            double from = Utils.stamp2AD(group.getKey()).durationFrom(ephemeris.getStart());
+            List<List<Interval>> computed = kernel.subset(memberDevices).computeAccess(ephemeris, satellite.getId(), th,
+                    simulation.getStep(), interpolated, from, openContacts);
+            for (int m = 0; m < members.size(); m++) {
+                int k = members.get(m);
+                intervals.get(k).addAll(computed.get(m));
+                putPairState(devices.get(chunk.get(k)), satelliteIndex, intervals.get(k), openContacts[m]);
+            }
         }
+        return intervals;
+
     }
 
     /**
-     *
+     * Computes the access intervals of one pair on the calling thread's Simulation. With incremental extension, a
+     * pair already computed over the current scenario is reused, and one computed up to an earlier end is only
+     * simulated from there
      **/
-    private List<Interval> computeConstellation2Devices() {
+    private List<Interval> computePair(Device device, int satelliteIndex) {
 
-        if (currentIntervals.size() <= 1) {
-            return currentIntervals;
+        PairState state = getPairState(device, satelliteIndex);
+        if (state != null && state.end.equals(simulation.getEndTime())) {
+            return state.getIntervals(device.getId());
         }
 
-        combinedIntervals.clear();
-        Set<Integer> inContact = new LinkedHashSet<>();
-        List<Event> eventList = intervals2eventsSatPOV(currentIntervals);
-        eventList = eventList.subList(1, eventList.size());
-
-        var currentInterval = currentIntervals.get(0);
-        inContact.add(currentInterval.getFirstFrom());
-
-        for (Event event : eventList) {
-            if (!inContact.contains(event.getWho())) {  // If I establish contact with a new asset
-                inContact.add(event.getWho());
-                if (includeCoverageGaps || !currentInterval.getFromAssets().isEmpty()) {
-                    combinedIntervals.add(new Interval(currentInterval.getStart(), event.getTime(), currentInterval.getFromAssets(), currentInterval.getToAssets()));
-                }
-                currentInterval.addFrom(event.getWho());
-            } else {    // If the asset is already in contact
-                inContact.remove(event.getWho());
-                combinedIntervals.add(new Interval(currentInterval.getStart(), event.getTime(), currentInterval.getFromAssets(), currentInterval.getToAssets()));
-                currentInterval.removeFrom(event.getWho());
-            }
-            currentInterval.setStart(event.getTime());
+        Simulation worker = workerSimulation.get();
+        worker.setParams(simulation);
+        worker.setStateCache(stateCache);
+        worker.setAssets(device, satellites.get(satelliteIndex));
+        if (state != null) {
+            worker.setStartTime(state.end);
+            worker.computeAccess(state.openContact);
+        } else {
+            worker.computeAccess();
         }
 
-        return combinedIntervals;
+        List<Interval> intervals = state != null ? state.getIntervals(device.getId()) : new ArrayList<>();
+        intervals.addAll(worker.getIntervals());
+        putPairState(device, satelliteIndex, intervals, worker.getOpenContact());
+        return intervals;
 
     }
 
+    private PairState getPairState(Device device, int satelliteIndex) {
+        if (!incrementalExtension) {
+            return null;
+        }
+        PairState[] states = pairStates.get(deviceKey(device));
+        return states != null ? states[satelliteIndex] : null;
+    }
+
+    private void putPairState(Device device, int satelliteIndex, List<Interval> intervals, long openContact) {
+        if (incrementalExtension) {
+            pairStates.computeIfAbsent(deviceKey(device), key -> new PairState[satellites.size()])[satelliteIndex] =
+                    new PairState(intervals, openContact, simulation.getEndTime());
+        }
+    }
+
     /**
-     *
+     * Devices are regenerated between runs with new ids, so pair states are keyed by location
      **/
-    public List<Interval> computeDevices2Constellation() {
+    private static String deviceKey(Device device) {
+        return Math.round(device.getLat() * 1e6) + ":" + Math.round(device.getLon() * 1e6) + ":"
+                + Math.round(device.getHeight() * 1e3);
+    }
+
+    /**
+     * Runs the device-satellite pairs on the virtual thread executor, setParallelism workers taking the pairs in
+     * evaluation order, and reports the devices in list order. Pairs rather than devices are the unit of work, so
+     * a device with many long passes is spread over the workers, and the workers live long enough for the
+     * PropagatorPool to hand each of them the same propagators again; one virtual thread per pair would build a new
+     * propagator for every pair. The first failing pair cancels the run, so the other workers stop
+     **/
+    private List<Interval> computeDevicesVirtual() {
 
-        if (currentIntervals.size() <= 1) {
-            return currentIntervals;
+        if (stateCache != null) {   // Propagate the satellites concurrently before the devices start reading them
+            List<Future<?>> ephemerides = new ArrayList<>(satellites.size());
+            for (Satellite satellite : satellites) {
+                ephemerides.add(virtualExecutor.submit(() -> stateCache.getEphemeris(satellite)));
+            }
+            ephemerides.forEach(ConstellationAccess::await);
         }
 
-        combinedIntervals.clear();
-        Set<Integer> inContact = new LinkedHashSet<>();
-        List<Event> eventList = intervals2eventsDevicePOV(currentIntervals);
-        eventList = eventList.subList(1, eventList.size());
-
-        var currentInterval = currentIntervals.get(0);
-        inContact.add(currentInterval.getFirstTo());
-
-        for (Event event : eventList) {
-            if (!inContact.contains(event.getWho())) {  // If I establish contact with a new asset
-                inContact.add(event.getWho());
-                if (includeCoverageGaps || !currentInterval.getToAssets().isEmpty()) {
-                    combinedIntervals.add(new Interval(currentInterval.getStart(), event.getTime(), currentInterval.getFromAssets(), currentInterval.getToAssets()));
+        int[] order = schedule();
+        int pairCount = order.length * satellites.size();
+        List<CompletableFuture<List<Interval>>> pairs = new ArrayList<>(pairCount);
+        for (int i = 0; i < pairCount; i++) {
+            pairs.add(new CompletableFuture<>());
+        }
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            for (int i = next.getAndIncrement(); i < pairCount; i = next.getAndIncrement()) {
+                Device device = devices.get(order[i / satellites.size()]);
+                int satelliteIndex = i % satellites.size();
+                try {
+                    pairs.get(i).complete(cancelled.get() || isNeverVisible(device, satellites.get(satelliteIndex))
+                            ? new ArrayList<>() : computePair(device, satelliteIndex));
+                } catch (RuntimeException e) {
+                    cancelled.set(true);    // Stop the other workers, the run fails anyway
+                    pairs.get(i).completeExceptionally(e);
                 }
-                currentInterval.addTo(event.getWho());
-            } else {    // If the asset is already in contact
-                inContact.remove(event.getWho());
-                combinedIntervals.add(new Interval(currentInterval.getStart(), event.getTime(), currentInterval.getFromAssets(), currentInterval.getToAssets()));
-                currentInterval.removeTo(event.getWho());
             }
-            currentInterval.setStart(event.getTime());
+        };
+        int workerCount = Math.min(parallelism, Math.max(1, pairCount));
+        List<Future<?>> workers = new ArrayList<>(workerCount);
+        for (int w = 0; w < workerCount; w++) {
+            workers.add(virtualExecutor.submit(worker));
         }
 
-        return combinedIntervals;
+        List<List<Interval>> byDevice = new ArrayList<>(Collections.nCopies(devices.size(), null));
+        try {
+            for (int k = 0; k < order.length; k++) {
+                List<List<Interval>> perSatellite = new ArrayList<>(satellites.size());
+                for (int s = 0; s < satellites.size(); s++) {
+                    perSatellite.add(await(pairs.get(k * satellites.size() + s)));
+                }
+                if (!cancelled.get()) {
+                    byDevice.set(order[k], combineDeviceAccesses(order[k], perSatellite));
+                }
+            }
+        } finally {
+            workers.forEach(ConstellationAccess::await);    // No pair outlives the run
+        }
+        return inDeviceOrder(byDevice);
 
     }
 
-    private List<Event> intervals2events(List<Interval> intervals) {
+    /**
+     * Waits for a task, rethrowing its failure unchecked
+     **/
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                    : new IllegalStateException(e.getCause());
+        }
+    }
 
-        List<Event> eventsList = new ArrayList<>();
+    /**
+     * Combines the per-satellite intervals of the device at a list position into the gap accumulator, and into the
+     * coverage matrix if enabled, then checks the device gap against the budget. Returns the combined accesses if
+     * they are retained
+     **/
+    private List<Interval> combineDeviceAccesses(int deviceIndex, List<List<Interval>> perSatellite) {
 
-        switch (povOption) {
-            case 1:
-                for (Interval interval : intervals) {
-                    eventsList.add(new Event(interval.getStart(), interval.getFirstTo()));
-                    eventsList.add(new Event(interval.getEnd(), interval.getFirstTo()));
-                }
-                break;
-            case 0:
-            default:
+        if (cancelled.get()) {  // Some pairs of the device may have been skipped
+            return Collections.emptyList();
+        }
+
+        if (coverageMatrix != null) {
+            for (List<Interval> intervals : perSatellite) {
                 for (Interval interval : intervals) {
-                    eventsList.add(new Event(interval.getStart(), interval.getFirstFrom()));
-                    eventsList.add(new Event(interval.getEnd(), interval.getFirstFrom()));
+                    coverageMatrix.addAccess(deviceIndex, interval.getStart(), interval.getEnd());
                 }
-                break;
+            }
         }
 
-        eventsList.sort((e1, e2) -> (int) (e1.getTime() - e2.getTime()));
-        return eventsList;
+        List<Interval> deviceAccesses = mergeDeviceAccesses(deviceIndex, perSatellite);
+        checkGapBudget(deviceIndex, gapAccumulator.getWorstGap(deviceIndex));
+        return deviceAccesses;
 
     }
 
-    private List<Event> intervals2eventsSatPOV(List<Interval> intervals) {
+    /**
+     * Stops the run if a device gap exceeds the budget, recording the first device that did
+     **/
+    private void checkGapBudget(int deviceIndex, long gap) {
+        if (gapBudget > 0 && gap > gapBudget && abortDevice.compareAndSet(-1, deviceIndex)) {
+            abortGap = gap;
+            cancelled.set(true);
+        }
+    }
 
-        List<Event> eventsList = new ArrayList<>();
+    /**
+     * Merges the per-satellite intervals of a device into its combined accesses. Satellites without any access
+     * contribute a no-access interval. The per-satellite lists are already in time order, so they are k-way merged
+     * straight into the coverage sweep, which feeds the gap accumulator and the coverage histogram. The combined
+     * intervals are only created and returned if accesses are retained
+     **/
+    private List<Interval> mergeDeviceAccesses(int deviceIndex, List<List<Interval>> perSatellite) {
+
+        Device device = devices.get(deviceIndex);
+        List<Interval> deviceAccesses = new ArrayList<>();
+        for (List<Interval> intervals : perSatellite) {
+            if (intervals.isEmpty()) {
+                coverageSink.addNoAccess(deviceIndex, simulation.getStartTimeUnix(), simulation.getEndTimeUnix());
+                if (retainAccesses) {
+                    deviceAccesses.add(noAccessInterval(device));
+                }
+            }
+        }
 
-        for (Interval interval : intervals) {
-            eventsList.add(new Event(interval.getStart(), interval.getFirstFrom()));
-            eventsList.add(new Event(interval.getEnd(), interval.getFirstFrom()));
+        List<Interval> combined = CoverageSweep.mergeSorted(perSatellite, true, includeCoverageGaps,
+                retainAccesses ? new ArrayList<>() : null, coverageSink, deviceIndex);
+        if (combined != null) {
+            deviceAccesses.addAll(combined);
         }
+        return deviceAccesses;
 
-        eventsList.sort((e1, e2) -> (int) (e1.getTime() - e2.getTime()));
-        return eventsList;
+    }
 
+    /**
+     * Classifies a pair analytically. Returns true, and counts the pair as skipped, if the pre-filter is enabled and
+     * the device lies outside every access region of the satellite
+     **/
+    private boolean isNeverVisible(Device device, Satellite satellite) {
+        if (geometricPrefilter
+                && Utils.getAccessRegions(device, satellite, simulation.getVisibilityThreshold(), Utils.FOOTPRINT_MARGIN) == 0) {
+            skippedPairs.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the interval reported for a device-satellite pair without any access
+     **/
+    private Interval noAccessInterval(Device device) {
+        return new Interval(Utils.stamp2unix(simulation.getStartTime()), Utils.stamp2unix(simulation.getEndTime()),
+                new ArrayList<>(device.getId()), new ArrayList<>());
     }
 
-    private List<Event> intervals2eventsDevicePOV(List<Interval> intervals) {
+    public void computeSatellitesPOV() {
+
+        setPovOption(1);
 
-        List<Event> eventsList = new ArrayList<>();
+        allAccesses.clear();
+        currentIntervals.clear();
 
-        for (Interval interval : intervals) {
-            eventsList.add(new Event(interval.getStart(), interval.getFirstTo()));
-            eventsList.add(new Event(interval.getEnd(), interval.getFirstTo()));
+        if (devices.isEmpty() || satellites.isEmpty()) {
+            System.out.println("Check assets!");
+            return;
         }
 
-        eventsList.sort((e1, e2) -> (int) (e1.getTime() - e2.getTime()));
-        return eventsList;
+        for (Satellite satellite : satellites) {
+
+            currentIntervals.clear();
+
+            for (Device device : devices) {
+                simulation.setAssets(device, satellite);
+                simulation.computeAccess();
+                synchronized (simulation) {
+                    if (simulation.getIntervals().isEmpty()) {
+                        allAccesses.add(new Interval(Utils.stamp2unix(simulation.getStartTime()), Utils.stamp2unix(simulation.getEndTime()),
+                                new ArrayList<>(device.getId()), new ArrayList<>()));
+                    } else {
+                        currentIntervals.addAll(simulation.getIntervals());
+                    }
+                }
+            }
+
+            currentIntervals.sort((i1, i2) -> Long.compare(i1.getStart(), i2.getStart()));
+
+            allAccesses.addAll(computeConstellation2Devices());
+
+        }
+    }
+
+    /**
+     *
+     **/
+    private List<Interval> computeConstellation2Devices() {
+        combinedIntervals.clear();
+        return CoverageSweep.merge(currentIntervals, false, includeCoverageGaps, combinedIntervals);
+    }
+
+    /**
+     *
+     **/
+    public List<Interval> computeDevices2Constellation() {
+        return computeDevices2Constellation(currentIntervals, combinedIntervals);
+    }
 
+    private List<Interval> computeDevices2Constellation(List<Interval> intervals, List<Interval> combinedIntervals) {
+        combinedIntervals.clear();
+        return CoverageSweep.merge(intervals, true, includeCoverageGaps, combinedIntervals);
     }
 
     /**
@@ -324,10 +1006,10 @@ public class ConstellationAccess {
 
         switch (povOption) {
             case 0:
-                return list.stream().filter(interval -> interval.getToAssets().size() >= n).collect(Collectors.toList());
+                return list.stream().filter(interval -> interval.getToSet().size() >= n).collect(Collectors.toList());
             case 1:
             default:
-                return list.stream().filter(interval -> interval.getFromAssets().size() >= n).collect(Collectors.toList());
+                return list.stream().filter(interval -> interval.getFromSet().size() >= n).collect(Collectors.toList());
         }
 
     }
@@ -340,10 +1022,10 @@ public class ConstellationAccess {
 
         switch (povOption) {
             case 0:
-                return list.stream().filter(interval -> interval.getToAssets().isEmpty()).collect(Collectors.toList());
+                return list.stream().filter(interval -> interval.getToSet().isEmpty()).collect(Collectors.toList());
             case 1:
             default:
-                return list.stream().filter(interval -> interval.getFromAssets().isEmpty()).collect(Collectors.toList());
+                return list.stream().filter(interval -> interval.getFromSet().isEmpty()).collect(Collectors.toList());
         }
 
     }
@@ -352,7 +1034,23 @@ public class ConstellationAccess {
      * computes the Maximum Coverage Gap for the computed accesses, unless they were not computed
      **/
     public void computeMaxMCG() {
-        computeMaxMCG(allAccesses);
+        if (!gapsAccumulated || povOption != 0) {
+            computeMaxMCG(allAccesses);
+            return;
+        }
+        if (cancelled.get() && abortDevice.get() < 0) {    // Cancelled from outside, the MCG is unknown
+            this.maxMCG = Double.MAX_VALUE;
+            return;
+        }
+        long maxGap = gapAccumulator.getMaxGap();
+        if (maxGap < 0) {
+            System.out.println("No such element exception");
+            maxGap = simulation.getEndTimeUnix() - simulation.getStartTimeUnix();
+        } else if (DEBUG_MODE && useCoverageHistogram && !cancelled.get() && coverageHistogram.getMaxGap(1) != maxGap) {
+            System.out.println("Coverage histogram level 1 gap " + coverageHistogram.getMaxGap(1) + " ms does not "
+                    + "match the MCG " + maxGap + " ms");
+        }
+        this.maxMCG = maxGap;
     }
 
     /**
@@ -365,13 +1063,13 @@ public class ConstellationAccess {
         try {
             switch (povOption) {
                 case 0:
-                    maxMCGInterval = Collections.max(list.stream().filter(interval -> interval.getToAssets().isEmpty()).collect(Collectors.toList()),
-                            (d1, d2) -> (int) ((double) d1.getDuration() - (double) d2.getDuration()));
+                    maxMCGInterval = Collections.max(list.stream().filter(interval -> interval.getToSet().isEmpty()).collect(Collectors.toList()),
+                            (d1, d2) -> Long.compare(d1.getDuration(), d2.getDuration()));
                     break;
                 case 1:
                 default:
-                    maxMCGInterval = Collections.max(list.stream().filter(interval -> interval.getFromAssets().isEmpty()).collect(Collectors.toList()),
-                            (d1, d2) -> (int) (d1.getDuration() - d2.getDuration()));
+                    maxMCGInterval = Collections.max(list.stream().filter(interval -> interval.getFromSet().isEmpty()).collect(Collectors.toList()),
+                            (d1, d2) -> Long.compare(d1.getDuration(), d2.getDuration()));
                     break;
             }
         } catch (NoSuchElementException nse) {
@@ -382,5 +1080,94 @@ public class ConstellationAccess {
         this.maxMCG = maxMCGInterval.getDuration();
     }
 
+    /**
+     * Computes the accesses of one device against every satellite, one forked subtask per satellite
+     **/
+    private class DeviceAccessTask extends RecursiveTask<List<Interval>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int deviceIndex;
+
+        DeviceAccessTask(int deviceIndex) {
+            this.deviceIndex = deviceIndex;
+        }
+
+        @Override
+        protected List<Interval> compute() {
+
+            if (cancelled.get()) {
+                return Collections.emptyList();
+            }
+            Device device = devices.get(deviceIndex);
+            List<PairAccessTask> pairs = new ArrayList<>(satellites.size());
+            for (int s = 0; s < satellites.size(); s++) {
+                pairs.add(new PairAccessTask(device, s));
+            }
+            invokeAll(pairs);
+
+            List<List<Interval>> perSatellite = new ArrayList<>(pairs.size());
+            for (PairAccessTask pair : pairs) {
+                perSatellite.add(pair.join());
+            }
+            return combineDeviceAccesses(deviceIndex, perSatellite);
+
+        }
+    }
+
+    /**
+     * Computes the access intervals of a single device-satellite pair on the worker's own Simulation
+     **/
+    private class PairAccessTask extends RecursiveTask<List<Interval>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Device device;
+        private final int satelliteIndex;
+
+        PairAccessTask(Device device, int satelliteIndex) {
+            this.device = device;
+            this.satelliteIndex = satelliteIndex;
+        }
+
+        @Override
+        protected List<Interval> compute() {
+            if (cancelled.get() || isNeverVisible(device, satellites.get(satelliteIndex))) {
+                return new ArrayList<>();
+            }
+            return computePair(device, satelliteIndex);
+        }
+    }
+
+    /**
+     * Access intervals of one pair up to the end of the scenario they were computed for, and the start of the
+     * contact still open then (-1 if none). The intervals are copies, as merging modifies the intervals it is given
+     **/
+    private static class PairState {
+
+        private final List<Interval> intervals = new ArrayList<>();
+        private final long openContact;
+        private final String end;
+
+        PairState(List<Interval> intervals, long openContact, String end) {
+            for (Interval interval : intervals) {
+                this.intervals.add(new Interval(interval.getStart(), interval.getEnd(), interval.getFromSet(),
+                        interval.getToSet()));
+            }
+            this.openContact = openContact;
+            this.end = end;
+        }
+
+        /**
+         * Returns new copies of the intervals, assigned to the given device id
+         **/
+        List<Interval> getIntervals(int deviceId) {
+            List<Interval> copies = new ArrayList<>(intervals.size());
+            for (Interval interval : intervals) {
+                copies.add(new Interval(interval.getStart(), interval.getEnd(), deviceId, interval.getFirstTo()));
+            }
+            return copies;
+        }
+    }
 
 }
@@ -0,0 +1,91 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * Online maximum coverage gap (MCG) of every device, fed by the coverage sweep as the combined intervals are
+ * produced. Each device keeps its last coverage end, its worst gap and the start of that gap, so the MCG of the
+ * whole grid takes O(devices) memory whatever the number of intervals. Devices are addressed by their position in
+ * the device list; each slot is only written by the task computing that device.
+ **/
+public class CoverageGapAccumulator implements CoverageSink {
+
+    private long[] lastCoverageEnd = new long[0];
+    private long[] worstGap = new long[0];
+    private long[] worstGapStart = new long[0];
+
+    /**
+     * Clears the state for a new run over the given number of devices
+     **/
+    public void reset(int devices) {
+        lastCoverageEnd = new long[devices];
+        worstGap = new long[devices];
+        worstGapStart = new long[devices];
+        Arrays.fill(lastCoverageEnd, Long.MIN_VALUE);
+        Arrays.fill(worstGap, -1);
+    }
+
+    @Override
+    public void addSegment(int device, long start, long end, int multiplicity) {
+        if (multiplicity == 0) {
+            addGap(device, start, end);
+        } else {
+            addCoverage(device, start, end);
+        }
+    }
+
+    public void addCoverage(int device, long start, long end) {
+        lastCoverageEnd[device] = Math.max(lastCoverageEnd[device], end);
+    }
+
+    public void addGap(int device, long start, long end) {
+        if (end - start > worstGap[device]) {
+            worstGap[device] = end - start;
+            worstGapStart[device] = start;
+        }
+    }
+
+    public int size() {
+        return worstGap.length;
+    }
+
+    /**
+     * Returns the worst gap of a device in ms, -1 if it has none
+     **/
+    public long getWorstGap(int device) {
+        return worstGap[device];
+    }
+
+    public long getWorstGapStart(int device) {
+        return worstGapStart[device];
+    }
+
+    /**
+     * Returns the end of the last coverage interval of a device, Long.MIN_VALUE if it was never covered
+     **/
+    public long getLastCoverageEnd(int device) {
+        return lastCoverageEnd[device];
+    }
+
+    /**
+     * Returns the position of the device with the worst gap, -1 if no device has a gap
+     **/
+    public int getWorstDevice() {
+        int worst = -1;
+        for (int d = 0; d < worstGap.length; d++) {
+            if (worstGap[d] >= 0 && (worst < 0 || worstGap[d] > worstGap[worst])) {
+                worst = d;
+            }
+        }
+        return worst;
+    }
+
+    /**
+     * Returns the largest gap over every device in ms, -1 if there is none
+     **/
+    public long getMaxGap() {
+        int worst = getWorstDevice();
+        return worst < 0 ? -1 : worstGap[worst];
+    }
+
+}
@@ -0,0 +1,126 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * Coverage multiplicity profile of every device, fed in a single pass by the coverage sweep. For each device it
+ * keeps the time spent with exactly m assets in contact and, for every level k, the longest gap between two periods
+ * with at least k assets in contact. Higher levels give k-fold MCG constraints from the same segments, without
+ * filtering the interval list once per level.
+ * Gaps follow the MCG rules: the time before the first and after the last k-fold period is not a gap, and a device
+ * never covered k-fold, or never seen by one of the satellites, has a gap of the whole scenario at every level. The
+ * gap at level 1 is then the coverage gap of computeMaxMCG, except when no device has any gap at all, where
+ * computeMaxMCG reports the whole scenario and the histogram 0. Devices are addressed by their position in the device
+ * list; each slot is only written by the task computing that device.
+ **/
+public class CoverageHistogram implements CoverageSink {
+
+    private int levels = 0;             // Multiplicities counted, 0 to levels - 1; higher ones count as the last
+    private long span = 0;
+    private long[] timeAtLevel = new long[0];   // [device * levels + m]
+    private long[] maxGap = new long[0];        // [device * levels + k], 0 unused
+    private long[] coverageEnd = new long[0];   // [device * levels + k], end of the last k-fold period
+
+    /**
+     * Clears the state for a new run
+     *
+     * @param maxLevel highest multiplicity told apart, usually the number of satellites
+     **/
+    public void reset(int devices, int maxLevel, long span) {
+        this.levels = maxLevel + 1;
+        this.span = span;
+        this.timeAtLevel = new long[devices * levels];
+        this.maxGap = new long[devices * levels];
+        this.coverageEnd = new long[devices * levels];
+        Arrays.fill(coverageEnd, Long.MIN_VALUE);
+    }
+
+    @Override
+    public void addSegment(int device, long start, long end, int multiplicity) {
+
+        int base = device * levels;
+        int m = Math.min(multiplicity, levels - 1);
+        timeAtLevel[base + m] += end - start;
+        for (int k = 1; k <= m; k++) {
+            long lastEnd = coverageEnd[base + k];
+            if (lastEnd != Long.MIN_VALUE && start - lastEnd > maxGap[base + k]) {
+                maxGap[base + k] = start - lastEnd;
+            }
+            coverageEnd[base + k] = end;
+        }
+
+    }
+
+    /**
+     * A satellite never seeing the device does not change the time at each level, only the gaps
+     **/
+    @Override
+    public void addNoAccess(int device, long start, long end) {
+        Arrays.fill(maxGap, device * levels + 1, (device + 1) * levels, span);
+    }
+
+    public int getDevices() {
+        return levels == 0 ? 0 : timeAtLevel.length / levels;
+    }
+
+    /**
+     * Returns the highest multiplicity told apart
+     **/
+    public int getMaxLevel() {
+        return levels - 1;
+    }
+
+    /**
+     * Returns the time in ms a device spends with exactly m assets in contact, or at least m for the highest level.
+     * Level 0 is the rest of the scenario
+     **/
+    public long getTimeAtLevel(int device, int m) {
+        if (m < 0 || m >= levels) {
+            return 0;
+        }
+        if (m > 0) {
+            return timeAtLevel[device * levels + m];
+        }
+        long covered = 0;
+        for (int level = 1; level < levels; level++) {
+            covered += timeAtLevel[device * levels + level];
+        }
+        return span - covered;
+    }
+
+    /**
+     * Returns the time in ms a device spends with at least k assets in contact
+     **/
+    public long getTimeAtLeast(int device, int k) {
+        long time = 0;
+        for (int m = Math.max(k, 0); m < levels; m++) {
+            time += getTimeAtLevel(device, m);
+        }
+        return time;
+    }
+
+    /**
+     * Returns the longest gap of a device in ms at level k, that is with fewer than k assets in contact
+     **/
+    public long getMaxGap(int device, int k) {
+        if (k <= 0) {
+            return 0;
+        }
+        if (k >= levels || coverageEnd[device * levels + k] == Long.MIN_VALUE) {
+            return span;
+        }
+        return maxGap[device * levels + k];
+    }
+
+    /**
+     * Returns the longest gap over every device in ms at level k
+     **/
+    public long getMaxGap(int k) {
+        long gap = 0;
+        for (int d = 0; d < getDevices(); d++) {
+            gap = Math.max(gap, getMaxGap(d, k));
+        }
+        return gap;
+    }
+
+}
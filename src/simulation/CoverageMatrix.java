@@ -0,0 +1,224 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * Time-discretized coverage of every device, one bit per scenario step. A sample is covered by a satellite if it
+ * falls within one of its access intervals, so passes shorter than a step between two samples are not seen.
+ * Each device holds a bit-sliced counter: plane p keeps bit p of the number of satellites in view at every sample,
+ * and satellite intervals are added with word-wide carries. The timeline of samples in view of at least k satellites
+ * is then a word-wise comparison of the planes, and gaps, coverage and revisit statistics come from bit counts and
+ * runs of trailing zeros, without interval objects.
+ * Gaps are measured between covered samples, to within a step of the interval gap; as for the interval MCG, the time
+ * before the first and after the last coverage is not a gap, and a device never covered has a gap of the whole
+ * scenario, but unlike it a satellite that never sees a device adds no gap. The matrix is therefore filled from the
+ * intervals next to the coverage sweep, for statistics only, and does not replace it. Devices are addressed by their
+ * position in the device list; each row is only written by the task computing that device.
+ **/
+public class CoverageMatrix {
+
+    private final long start;
+    private final long span;
+    private final long stepMillis;
+    private final int steps;
+    private final int words;
+    private final int planes;
+    private final long[][] rows;     // [device][plane * words + word], allocated on first access
+
+    /**
+     * @param satellites largest number of satellites in view at once, to size the counters
+     **/
+    public CoverageMatrix(int devices, int satellites, long start, long end, double step) {
+        this.start = start;
+        this.span = end - start;
+        this.stepMillis = Math.max(1, Math.round(step * 1000));
+        this.steps = (int) ((end - start) / stepMillis) + 1;
+        this.words = (steps + 63) >>> 6;
+        this.planes = Math.max(1, 32 - Integer.numberOfLeadingZeros(satellites));
+        this.rows = new long[devices][];
+    }
+
+    /**
+     * Adds an access interval of one satellite to a device. The intervals of one satellite must not overlap
+     **/
+    public void addAccess(int device, long from, long to) {
+
+        int first = (int) Math.max(0, -Math.floorDiv(start - from, stepMillis));    // ceil
+        int last = (int) Math.min(steps - 1, Math.floorDiv(to - start, stepMillis));
+        if (first > last) {
+            return;
+        }
+        if (rows[device] == null) {
+            rows[device] = new long[planes * words];
+        }
+        long[] row = rows[device];
+
+        for (int w = first >>> 6; w <= last >>> 6; w++) {
+            long carry = -1L;
+            if (w == first >>> 6) {
+                carry &= -1L << first;
+            }
+            if (w == last >>> 6) {
+                carry &= -1L >>> (63 - (last & 63));
+            }
+            for (int p = 0; p < planes && carry != 0; p++) {
+                long overflow = row[p * words + w] & carry;
+                row[p * words + w] ^= carry;
+                carry = overflow;
+            }
+        }
+
+    }
+
+    public int getDevices() {
+        return rows.length;
+    }
+
+    public int getSteps() {
+        return steps;
+    }
+
+    public long getStepMillis() {
+        return stepMillis;
+    }
+
+    /**
+     * Returns the samples of a device in view of at least k satellites, one bit per step
+     **/
+    public long[] getTimeline(int device, int k) {
+
+        long[] timeline = new long[words];
+        long[] row = rows[device];
+        if (k <= 0) {
+            Arrays.fill(timeline, -1L);
+            timeline[words - 1] = lastWordMask();
+            return timeline;
+        }
+        if (row == null || k >>> planes != 0) {
+            return timeline;
+        }
+
+        // count >= k, comparing the planes with k from the most significant bit
+        for (int w = 0; w < words; w++) {
+            long greater = 0;
+            long equal = -1L;
+            for (int p = planes - 1; p >= 0; p--) {
+                long plane = row[p * words + w];
+                if ((k >>> p & 1) != 0) {
+                    equal &= plane;
+                } else {
+                    greater |= equal & plane;
+                    equal &= ~plane;
+                }
+            }
+            timeline[w] = greater | equal;
+        }
+        timeline[words - 1] &= lastWordMask();
+        return timeline;
+
+    }
+
+    /**
+     * Returns the number of samples of a device in view of at least k satellites
+     **/
+    public int getCoveredSteps(int device, int k) {
+        int covered = 0;
+        for (long word : getTimeline(device, k)) {
+            covered += Long.bitCount(word);
+        }
+        return covered;
+    }
+
+    public double getCoveragePercent(int device, int k) {
+        return 100.0 * getCoveredSteps(device, k) / steps;
+    }
+
+    /**
+     * Returns the longest gap of a device in ms, with coverage meaning at least k satellites in view
+     **/
+    public long getMaxGap(int device, int k) {
+        return gapStatistics(getTimeline(device, k))[2];
+    }
+
+    /**
+     * Returns the number of gaps of a device between two coverage periods, that is the number of revisits
+     **/
+    public long getGapCount(int device, int k) {
+        return gapStatistics(getTimeline(device, k))[0];
+    }
+
+    /**
+     * Returns the mean revisit gap of a device in ms, 0 if there is none
+     **/
+    public double getMeanGap(int device, int k) {
+        long[] statistics = gapStatistics(getTimeline(device, k));
+        return statistics[0] == 0 ? 0 : (double) statistics[1] / statistics[0];
+    }
+
+    /**
+     * Returns the longest gap over every device in ms
+     **/
+    public long getMaxGap(int k) {
+        long maxGap = 0;
+        for (int d = 0; d < rows.length; d++) {
+            maxGap = Math.max(maxGap, getMaxGap(d, k));
+        }
+        return maxGap;
+    }
+
+    /**
+     * Returns the number of gaps, their total and their maximum length in ms
+     **/
+    private long[] gapStatistics(long[] timeline) {
+
+        long[] statistics = new long[3];
+        int covered = nextSetBit(timeline, 0);
+        if (covered < 0) {
+            statistics[2] = span;
+            return statistics;
+        }
+        while (true) {
+            int uncovered = nextClearBit(timeline, covered);
+            int next = uncovered < steps ? nextSetBit(timeline, uncovered) : -1;
+            if (next < 0) {
+                return statistics;
+            }
+            long gap = (next - uncovered + 1) * stepMillis;     // From the last covered sample to the next one
+            statistics[0]++;
+            statistics[1] += gap;
+            statistics[2] = Math.max(statistics[2], gap);
+            covered = next;
+        }
+
+    }
+
+    private int nextSetBit(long[] timeline, int from) {
+        int w = from >>> 6;
+        long word = timeline[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == words) {
+                return -1;
+            }
+            word = timeline[w];
+        }
+        int bit = (w << 6) + Long.numberOfTrailingZeros(word);
+        return bit < steps ? bit : -1;
+    }
+
+    private int nextClearBit(long[] timeline, int from) {
+        int w = from >>> 6;
+        long word = ~timeline[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == words) {
+                return steps;
+            }
+            word = ~timeline[w];
+        }
+        return Math.min(steps, (w << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    private long lastWordMask() {
+        return -1L >>> (63 - ((steps - 1) & 63));
+    }
+
+}
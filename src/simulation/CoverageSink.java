@@ -0,0 +1,42 @@
+package simulation;
+
+/**
+ * Receiver of the coverage segments of a device as the coverage sweep produces them, in time order
+ **/
+public interface CoverageSink {
+
+    /**
+     * @param multiplicity number of assets in contact over the segment, 0 for a gap
+     **/
+    void addSegment(int device, long start, long end, int multiplicity);
+
+    /**
+     * Called for every satellite that never sees the device. As for the interval MCG, such a device has a gap of the
+     * whole scenario whatever the other satellites cover
+     **/
+    default void addNoAccess(int device, long start, long end) {
+        addSegment(device, start, end, 0);
+    }
+
+    /**
+     * Returns a sink forwarding every call to both sinks, in order
+     **/
+    static CoverageSink of(CoverageSink first, CoverageSink second) {
+        return new CoverageSink() {
+
+            @Override
+            public void addSegment(int device, long start, long end, int multiplicity) {
+                first.addSegment(device, start, end, multiplicity);
+                second.addSegment(device, start, end, multiplicity);
+            }
+
+            @Override
+            public void addNoAccess(int device, long start, long end) {
+                first.addNoAccess(device, start, end);
+                second.addNoAccess(device, start, end);
+            }
+
+        };
+    }
+
+}
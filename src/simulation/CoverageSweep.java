@@ -0,0 +1,318 @@
+package simulation;
+
+import simulation.structures.AssetSet;
+import simulation.structures.Interval;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sweep-line merger of the access intervals seen from one asset into combined coverage intervals, each listing the
+ * assets in contact over it. Boundaries are encoded as primitive long keys, time in the high bits and boundary index
+ * in the low bits, so a single primitive sort orders them by time and keeps equal times in input order. The assets
+ * in contact are tracked in one AssetSet: a boundary of an asset not in contact opens it, any other closes it.
+ * Nothing is allocated per boundary besides the output intervals.
+ * When the intervals come as one sorted list per satellite, mergeSorted merges the lists' boundaries with a heap
+ * instead of sorting them, in O(n log k) for k lists.
+ **/
+public final class CoverageSweep {
+
+    private CoverageSweep() {
+    }
+
+    /**
+     * Merges intervals sorted by start. The sweep runs over the destination assets (device point of view) or over
+     * the origin assets (satellite point of view), the other side being taken from the first interval. Coverage
+     * gaps, intervals with no asset in contact, are only added to the output if includeGaps is set.
+     * Lists of one interval or less are returned as they are
+     *
+     * @param output list the combined intervals are appended to
+     **/
+    public static List<Interval> merge(List<Interval> intervals, boolean byDestination, boolean includeGaps,
+                                       List<Interval> output) {
+
+        int count = intervals.size();
+        if (count <= 1) {
+            return intervals;
+        }
+
+        int[] who = new int[count];
+        long origin = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            Interval interval = intervals.get(i);
+            who[i] = byDestination ? interval.getFirstTo() : interval.getFirstFrom();
+            origin = Math.min(origin, Math.min(interval.getStart(), interval.getEnd()));
+            last = Math.max(last, Math.max(interval.getStart(), interval.getEnd()));
+        }
+
+        long[] keys = sortedBoundaries(intervals, origin, last);
+        int indexBits = indexBits(2 * count);
+        long indexMask = (1L << indexBits) - 1;
+
+        Sweep sweep = new Sweep(intervals.get(0), byDestination, includeGaps, output);
+        for (int k = 1; k < keys.length; k++) {     // The first boundary is the start of the first interval
+            int boundary = (int) (keys[k] & indexMask);
+            sweep.accept(boundaryTime(intervals, boundary), who[boundary >>> 1]);
+        }
+        return output;
+
+    }
+
+    /**
+     * Merges one list of intervals per source asset, such as the per-satellite results of a device. Each list must
+     * be sorted by start and free of overlaps, as Simulation.computeAccess produces them. The boundaries of the lists
+     * are k-way merged on a primitive heap and streamed into the sweep, without concatenating or sorting the
+     * intervals. The output is the same as merge on the concatenation sorted by start.
+     * If there is one interval or less in total, the list holding it is returned
+     **/
+    public static List<Interval> mergeSorted(List<List<Interval>> lists, boolean byDestination, boolean includeGaps,
+                                             List<Interval> output) {
+        return mergeSorted(lists, byDestination, includeGaps, output, null, 0);
+    }
+
+    /**
+     * Same as mergeSorted, also feeding every combined interval to a coverage sink, such as a gap accumulator, under
+     * the given device slot. With a null output the combined intervals are only fed to the sink, never created, and
+     * null is returned
+     **/
+    public static List<Interval> mergeSorted(List<List<Interval>> lists, boolean byDestination, boolean includeGaps,
+                                             List<Interval> output, CoverageSink sink, int device) {
+
+        int k = lists.size();
+        int total = 0;
+        List<Interval> last = lists.isEmpty() ? output : lists.get(0);
+        for (List<Interval> list : lists) {
+            total += list.size();
+            if (!list.isEmpty()) {
+                last = list;
+            }
+        }
+        if (total <= 1) {
+            if (sink != null && total == 1) {
+                Interval interval = last.get(0);
+                sink.addSegment(device, interval.getStart(), interval.getEnd(),
+                        byDestination ? interval.getToSet().size() : interval.getFromSet().size());
+            }
+            return output == null ? null : last;
+        }
+
+        // Heap of list indices ordered by their next boundary
+        BoundaryHeap heap = new BoundaryHeap(lists);
+        for (int l = 0; l < k; l++) {
+            if (!lists.get(l).isEmpty()) {
+                heap.push(l);
+            }
+        }
+
+        Sweep sweep = new Sweep(heap.interval(heap.peek()), byDestination, includeGaps, output);
+        sweep.feed(sink, device);
+        heap.advance();     // The first boundary is the start of the first interval
+        while (!heap.isEmpty()) {
+            int l = heap.peek();
+            Interval interval = heap.interval(l);
+            sweep.accept(heap.time(l), byDestination ? interval.getFirstTo() : interval.getFirstFrom());
+            heap.advance();
+        }
+        return output;
+
+    }
+
+    /**
+     * Running state of a sweep: the assets in contact since start. A boundary of an asset not in contact opens it,
+     * any other boundary closes it; either way the interval up to the boundary is emitted, except gaps when not wanted
+     **/
+    private static final class Sweep {
+
+        private final AssetSet inContact;
+        private final AssetSet others;
+        private final boolean byDestination;
+        private final boolean includeGaps;
+        private final List<Interval> output;
+        private CoverageSink sink;
+        private int device;
+        private long start;
+
+        Sweep(Interval first, boolean byDestination, boolean includeGaps, List<Interval> output) {
+            this.inContact = new AssetSet(byDestination ? first.getToSet() : first.getFromSet());
+            this.others = byDestination ? first.getFromSet() : first.getToSet();
+            this.byDestination = byDestination;
+            this.includeGaps = includeGaps;
+            this.output = output;
+            this.start = first.getStart();
+        }
+
+        void feed(CoverageSink sink, int device) {
+            this.sink = sink;
+            this.device = device;
+        }
+
+        void accept(long time, int asset) {
+            if (!inContact.contains(asset)) {
+                if (includeGaps || !inContact.isEmpty()) {
+                    emit(time);
+                }
+                inContact.add(asset);
+            } else {
+                emit(time);
+                inContact.remove(asset);
+            }
+            start = time;
+        }
+
+        private void emit(long end) {
+            if (sink != null) {
+                sink.addSegment(device, start, end, inContact.size());
+            }
+            if (output != null) {
+                output.add(byDestination ? new Interval(start, end, others, inContact)
+                        : new Interval(start, end, inContact, others));
+            }
+        }
+    }
+
+    /**
+     * Binary min-heap of list indices keyed by the next boundary of each list. Ties are broken by the start of the
+     * interval owning the boundary, then by list index, which is the order a stable sort by start would give
+     **/
+    private static final class BoundaryHeap {
+
+        private final List<List<Interval>> lists;
+        private final int[] cursor;     // next boundary of each list: 2i for the start of interval i, 2i + 1 for its end
+        private final int[] heap;
+        private int size = 0;
+
+        BoundaryHeap(List<List<Interval>> lists) {
+            this.lists = lists;
+            this.cursor = new int[lists.size()];
+            this.heap = new int[lists.size()];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int peek() {
+            return heap[0];
+        }
+
+        Interval interval(int list) {
+            return lists.get(list).get(cursor[list] >>> 1);
+        }
+
+        long time(int list) {
+            return boundaryTime(lists.get(list), cursor[list]);
+        }
+
+        void push(int list) {
+            int i = size++;
+            heap[i] = list;
+            while (i > 0 && less(heap[i], heap[(i - 1) >>> 1])) {
+                swap(i, (i - 1) >>> 1);
+                i = (i - 1) >>> 1;
+            }
+        }
+
+        /**
+         * Moves the top list to its next boundary, dropping it when exhausted
+         **/
+        void advance() {
+            int top = heap[0];
+            if (++cursor[top] == 2 * lists.get(top).size()) {
+                heap[0] = heap[--size];
+            }
+            int i = 0;
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && less(heap[left], heap[smallest])) {
+                    smallest = left;
+                }
+                if (right < size && less(heap[right], heap[smallest])) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private boolean less(int a, int b) {
+            long timeA = time(a);
+            long timeB = time(b);
+            if (timeA != timeB) {
+                return timeA < timeB;
+            }
+            long startA = interval(a).getStart();
+            long startB = interval(b).getStart();
+            return startA != startB ? startA < startB : a < b;
+        }
+
+        private void swap(int i, int j) {
+            int list = heap[i];
+            heap[i] = heap[j];
+            heap[j] = list;
+        }
+    }
+
+    private static long boundaryTime(List<Interval> intervals, int boundary) {
+        Interval interval = intervals.get(boundary >>> 1);
+        return (boundary & 1) == 0 ? interval.getStart() : interval.getEnd();
+    }
+
+    private static int indexBits(int boundaries) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(boundaries - 1));
+    }
+
+    /**
+     * Returns the boundary keys in time order, the boundary index (2i for the start of interval i, 2i + 1 for its
+     * end) in the low bits. If the time span does not fit in the remaining bits, the keys hold the index only and are
+     * ordered by an explicit merge sort on the times, which is stable as well
+     **/
+    private static long[] sortedBoundaries(List<Interval> intervals, long origin, long last) {
+
+        int boundaries = 2 * intervals.size();
+        int indexBits = indexBits(boundaries);
+        long[] keys = new long[boundaries];
+
+        if (last - origin >= 0 && (last - origin) >>> (63 - indexBits) == 0) {
+            for (int b = 0; b < boundaries; b++) {
+                keys[b] = ((boundaryTime(intervals, b) - origin) << indexBits) | b;
+            }
+            Arrays.sort(keys);
+            return keys;
+        }
+
+        long[] times = new long[boundaries];
+        for (int b = 0; b < boundaries; b++) {
+            keys[b] = b;
+            times[b] = boundaryTime(intervals, b);
+        }
+        mergeSort(keys, new long[boundaries], times, 0, boundaries);
+        return keys;
+
+    }
+
+    private static void mergeSort(long[] keys, long[] buffer, long[] times, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(keys, buffer, times, from, middle);
+        mergeSort(keys, buffer, times, middle, to);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && times[(int) keys[left]] <= times[(int) keys[right]])) {
+                buffer[i] = keys[left++];
+            } else {
+                buffer[i] = keys[right++];
+            }
+        }
+        System.arraycopy(buffer, from, keys, from, to - from);
+    }
+
+}
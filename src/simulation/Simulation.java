@@ -1,16 +1,17 @@
 package simulation;
 
+import org.hipparchus.analysis.UnivariateFunction;
+import org.hipparchus.analysis.solvers.BrentSolver;
+import org.hipparchus.exception.MathIllegalArgumentException;
+import org.hipparchus.exception.MathIllegalStateException;
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
 import org.hipparchus.ode.events.Action;
 import org.orekit.bodies.BodyShape;
 import org.orekit.bodies.GeodeticPoint;
-import org.orekit.bodies.OneAxisEllipsoid;
-import org.orekit.data.DataContext;
-import org.orekit.data.DataProvidersManager;
-import org.orekit.data.DirectoryCrawler;
 import org.orekit.frames.Frame;
 import org.orekit.frames.FramesFactory;
 import org.orekit.frames.TopocentricFrame;
+import org.orekit.frames.Transform;
 import org.orekit.propagation.SpacecraftState;
 import org.orekit.propagation.analytical.tle.TLE;
 import org.orekit.propagation.analytical.tle.TLEPropagator;
@@ -18,21 +19,26 @@ import org.orekit.propagation.events.ElevationDetector;
 import org.orekit.propagation.events.EventDetector;
 import org.orekit.time.AbsoluteDate;
 import org.orekit.time.TimeScalesFactory;
-import org.orekit.utils.Constants;
-import org.orekit.utils.IERSConventions;
 import org.orekit.utils.PVCoordinates;
 import simulation.assets.Asset;
 import simulation.assets.objects.Device;
 import simulation.assets.objects.Satellite;
+import simulation.propagation.EarthRotationCache;
+import simulation.propagation.ItrfEphemeris;
+import simulation.propagation.J2KeplerPropagator;
+import simulation.propagation.PropagatorPool;
+import simulation.propagation.SatelliteStateCache;
 import simulation.structures.Ephemeris;
+import simulation.structures.EphemerisSink;
+import simulation.structures.EphemerisTable;
 import simulation.structures.Interval;
 import simulation.utils.Utils;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Locale;
+import java.util.NoSuchElementException;
 
 public class Simulation implements Runnable {
 
@@ -46,13 +52,26 @@ public class Simulation implements Runnable {
 
     private double step = 60D;
     private double th;
-    private Frame inertialFrame;
+    private EarthRotationCache earthRotationCache;
+    private EarthRotationCache temeRotationCache;
     private BodyShape earth;
     private GeodeticPoint geodeticPoint;
     private TopocentricFrame topocentricFrame;
+    private Transform earthToTopocentric;
     private TLEPropagator tlePropagator;
+    private J2KeplerPropagator j2Propagator;
+    private boolean analytic = false;
+    private PropagatorPool propagatorPool = PropagatorPool.getShared();
+    private SatelliteStateCache stateCache;
+    private boolean adaptiveStep = false;
+    private double minPassDuration = 0;
+    private boolean coarseToFine = false;
+    private double semiMajorAxis;
+    private double eccentricity;
+    private double maxGroundTrackRate;
     private final double TH_DETECTION = 0.001; // 1 ms default
     private Date contact = new Date();
+    private boolean visible = false;
     private double lastSimTime = 0;
 
     public Simulation() {
@@ -79,23 +98,11 @@ public class Simulation implements Runnable {
 
     private void init() {
 
-        // configure Orekit
-        var orekitData = new File("orekit-data");
-        if (!orekitData.exists()) {
-            System.err.format(Locale.US, "Failed to find %s folder%n",
-                    orekitData.getAbsolutePath());
-            System.exit(1);
-        }
-
-        DataProvidersManager manager = DataContext.getDefault().getDataProvidersManager();
-        manager.addProvider(new DirectoryCrawler(orekitData));
-
-        // configure Earth frame:
-        Frame earthFrame = FramesFactory.getITRF(IERSConventions.IERS_2010, true);
-        this.earth = new OneAxisEllipsoid(Constants.WGS84_EARTH_EQUATORIAL_RADIUS,
-                Constants.WGS84_EARTH_FLATTENING,
-                earthFrame);
-        this.inertialFrame = FramesFactory.getEME2000();
+        // Orekit data, frames and Earth model are loaded once per process and shared
+        SimulationContext context = SimulationContext.get();
+        this.earth = context.getEarth();
+        this.earthRotationCache = context.getEarthRotationCache();
+        this.temeRotationCache = context.getTemeRotationCache();
         this.intervalList = new ArrayList<>();
 
     }
@@ -107,6 +114,61 @@ public class Simulation implements Runnable {
         this.th = Math.toRadians(th);
     }
 
+    /**
+     * Copies the scenario time span, step and visibility threshold of another simulation
+     **/
+    public void setParams(Simulation source) {
+        this.time1 = source.time1;
+        this.time2 = source.time2;
+        this.step = source.step;
+        this.th = source.th;
+        this.adaptiveStep = source.adaptiveStep;
+        this.minPassDuration = source.minPassDuration;
+        this.coarseToFine = source.coarseToFine;
+        if (this.analytic != source.analytic) {
+            setAnalyticPropagation(source.analytic);
+        }
+    }
+
+    /**
+     * Enables the footprint-aware adaptive access search. While the sub-satellite point is far outside the device's
+     * footprint the search jumps ahead by the shortest time it could take to reach it, near the footprint it samples
+     * at min(step, minPassDuration). Passes longer than minPassDuration (0: the scenario step) are never missed
+     **/
+    public void setAdaptiveStep(boolean adaptiveStep, double minPassDuration) {
+        this.adaptiveStep = adaptiveStep;
+        this.minPassDuration = minPassDuration;
+    }
+
+    /**
+     * Replaces the ElevationDetector search with a two-pass one: the elevation is first sampled over the whole
+     * scenario grid, then Brent's method refines the threshold crossing only where the sign changes or a sampled
+     * maximum lies just below the threshold. The adaptive search takes precedence when both are set
+     **/
+    public void setCoarseToFine(boolean coarseToFine) {
+        this.coarseToFine = coarseToFine;
+    }
+
+    /**
+     * Replaces SGP4 with the closed-form J2KeplerPropagator for access searches, propagate and computePVD. Much
+     * cheaper but only accurate to a few kilometers, meant for screening candidate constellations
+     **/
+    public void setAnalyticPropagation(boolean analytic) {
+        this.analytic = analytic;
+        this.j2Propagator = analytic && satellite != null ? J2KeplerPropagator.of(satellite, earth.getBodyFrame()) : null;
+    }
+
+    public boolean isAnalyticPropagation() {
+        return analytic;
+    }
+
+    /**
+     * Moves the scenario start, keeping its end, step and visibility threshold
+     **/
+    public void setStartTime(String timeStart) {
+        this.time1 = timeStart;
+    }
+
     public String getStartTime() {
         return this.time1;
     }
@@ -115,6 +177,17 @@ public class Simulation implements Runnable {
         return this.time2;
     }
 
+    public double getStep() {
+        return this.step;
+    }
+
+    /**
+     * Returns the visibility threshold in degrees
+     **/
+    public double getVisibilityThreshold() {
+        return Math.toDegrees(this.th);
+    }
+
     public long getStartTimeUnix() {
         return Utils.stamp2unix(this.time1);
     }
@@ -156,17 +229,36 @@ public class Simulation implements Runnable {
         this.device = device;
         this.geodeticPoint = new GeodeticPoint(device.getLatRad(), device.getLonRad(), device.getHeight());
         this.topocentricFrame = new TopocentricFrame(earth, geodeticPoint, device.getName());
+        this.earthToTopocentric = earth.getBodyFrame().getTransformTo(topocentricFrame, AbsoluteDate.J2000_EPOCH);  // Fixed in time
     }
 
     public void setSatellite(Satellite satellite) {
         this.satellite = satellite;
-        TLE tle;
-        if (satellite.getTLE1().isEmpty() || satellite.getTLE2().isEmpty()) {
-            tle = Utils.satellite2tle(satellite);
-        } else {
-            tle = new TLE(satellite.getTLE1(), satellite.getTLE2());
+        this.tlePropagator = propagatorPool.acquire(satellite);
+        TLE tle = tlePropagator.getTLE();
+        this.semiMajorAxis = Math.cbrt(Utils.MU / (tle.getMeanMotion() * tle.getMeanMotion()));
+        this.eccentricity = tle.getE();
+        this.maxGroundTrackRate = Utils.getMaxGroundTrackRate(tle.getMeanMotion(), tle.getE());
+        if (analytic) {
+            this.j2Propagator = J2KeplerPropagator.of(satellite, earth.getBodyFrame());
         }
-        this.tlePropagator = TLEPropagator.selectExtrapolator(tle);
+    }
+
+    /**
+     * Sets the pool the satellite propagators are taken from, the shared pool by default
+     **/
+    public void setPropagatorPool(PropagatorPool propagatorPool) {
+        this.propagatorPool = propagatorPool;
+    }
+
+    /**
+     * Sets a shared cache of satellite states. While the cache covers the scenario, computeAccess checks the
+     * elevation against the cached samples and only propagates around the visibility threshold crossings.
+     * If the cache is interpolated, the propagator is not used at all: every state, including the ones returned by
+     * propagate and computePVD, comes from Hermite interpolation of the cached Earth-fixed samples
+     **/
+    public void setStateCache(SatelliteStateCache stateCache) {
+        this.stateCache = stateCache;
     }
 
     public double getTotalAccess() {
@@ -178,37 +270,366 @@ public class Simulation implements Runnable {
     }
 
     public void computeAccess() {
+        computeAccess(-1);
+    }
+
+    /**
+     * Computes the accesses of the current pair. If the pair was already in contact at the scenario start, openContact
+     * is the unix time in ms that contact began (-1 otherwise), so a pass crossing the start is reported whole.
+     * See getOpenContact to chain consecutive scenarios
+     **/
+    public void computeAccess(long openContact) {
 
         long t0 = System.currentTimeMillis();
 
         intervalList.clear();
 
-        contact.setTime(Utils.stamp2unix(time1));
+        contact.setTime(openContact >= 0 ? openContact : Utils.stamp2unix(time1));
+        visible = isVisible(Utils.stamp2AD(time1));
+
+        if (stateCache != null && stateCache.isAnalytic() == analytic && stateCache.contains(time1, time2, step)) {
+            accessFromStateCache();
+            lastSimTime = System.currentTimeMillis() - t0;
+            return;
+        }
+
+        if (analytic) {
+            accessAnalytic();
+            lastSimTime = System.currentTimeMillis() - t0;
+            return;
+        }
+
+        if (adaptiveStep) {
+            accessAdaptive();
+            lastSimTime = System.currentTimeMillis() - t0;
+            return;
+        }
+
+        if (coarseToFine) {
+            accessCoarseToFine();
+            lastSimTime = System.currentTimeMillis() - t0;
+            return;
+        }
+
         EventDetector elevDetector = new ElevationDetector(step, TH_DETECTION, topocentricFrame).
                 withConstantElevation(th).
                 withHandler(
                         (s, detector, increasing) -> {
-                            addInterval(s, detector, increasing);
+                            addInterval(s.getDate(), increasing);
                             return Action.CONTINUE;
                         });
 
+        this.tlePropagator.clearEventsDetectors();  // Pooled propagators are reused across pairs and runs
         this.tlePropagator.addEventDetector(elevDetector);
-        accessBetweenDates(Utils.stamp2AD(time1), Utils.stamp2AD(time2));
+        try {
+            accessBetweenDates(Utils.stamp2AD(time1), Utils.stamp2AD(time2));
+        } finally {
+            this.tlePropagator.clearEventsDetectors();
+        }
         lastSimTime = System.currentTimeMillis() - t0;
 
     }
 
+    /**
+     * Returns the unix time in ms of the start of a contact still open at the scenario end, -1 if the satellite is
+     * not in view then. Such a contact is not part of getIntervals
+     **/
+    public long getOpenContact() {
+        return visible ? contact.getTime() : -1;
+    }
+
+    private boolean isVisible(AbsoluteDate date) {
+        PVCoordinates pv = propagate(date);
+        return topocentricFrame.getElevation(pv.getPosition(), earth.getBodyFrame(), date) > th;
+    }
+
     private void accessBetweenDates(AbsoluteDate time1, AbsoluteDate time2) {
         double scenarioTime = time2.durationFrom(time1);
         tlePropagator.propagate(time1, time1.shiftedBy(scenarioTime));
     }
 
-    private void addInterval(SpacecraftState s, ElevationDetector detector, boolean dir) { // TODO remove detector and add last contact within simulation end case
+    /**
+     * Scans the cached elevation samples of the current satellite for threshold crossings and refines each crossing
+     * against the propagator down to TH_DETECTION
+     **/
+    private void accessFromStateCache() {
+
+        ItrfEphemeris ephemeris = stateCache.getEphemeris(satellite);
+        Vector3D station = earth.transform(geodeticPoint);
+        Vector3D zenith = topocentricFrame.getZenith();
+        double sinTh = Math.sin(th);
+        double offset = Utils.stamp2AD(time1).durationFrom(ephemeris.getStart());    // The scenario may start later than the cache
+
+        if (stateCache.isInterpolated()) {
+            accessFromInterpolation(ephemeris, station, zenith, sinTh, offset);
+            return;
+        }
+
+        int first = (int) Math.round(offset / ephemeris.getStep());
+        double previous = ephemeris.getSinElevation(first, station.getX(), station.getY(), station.getZ(),
+                zenith.getX(), zenith.getY(), zenith.getZ()) - sinTh;
+        for (int i = first + 1; i < ephemeris.size(); i++) {
+            double current = ephemeris.getSinElevation(i, station.getX(), station.getY(), station.getZ(),
+                    zenith.getX(), zenith.getY(), zenith.getZ()) - sinTh;
+            if ((previous > 0) != (current > 0)) {
+                addInterval(refineCrossing(ephemeris.getDate(i - 1), ephemeris.getDate(i), current > 0), current > 0);
+            }
+            previous = current;
+        }
+
+    }
+
+    /**
+     * Scans the interpolated elevation at every scenario step and bisects each threshold crossing on the
+     * interpolated ephemeris down to TH_DETECTION
+     **/
+    private void accessFromInterpolation(ItrfEphemeris ephemeris, Vector3D station, Vector3D zenith, double sinTh,
+                                         double offset) {
+
+        double[] pv = new double[6];
+        double span = ephemeris.getSpan();
+        double previousTime = offset;
+        double previous = ephemeris.interpolateSinElevation(offset, pv, station.getX(), station.getY(), station.getZ(),
+                zenith.getX(), zenith.getY(), zenith.getZ()) - sinTh;
+
+        while (previousTime < span) {
+            double time = Math.min(previousTime + step, span);
+            double current = ephemeris.interpolateSinElevation(time, pv, station.getX(), station.getY(), station.getZ(),
+                    zenith.getX(), zenith.getY(), zenith.getZ()) - sinTh;
+            if ((previous > 0) != (current > 0)) {
+                boolean increasing = current > 0;
+                double before = previousTime;
+                double after = time;
+                while (after - before > TH_DETECTION) {
+                    double middle = (before + after) / 2;
+                    double g = ephemeris.interpolateSinElevation(middle, pv, station.getX(), station.getY(), station.getZ(),
+                            zenith.getX(), zenith.getY(), zenith.getZ()) - sinTh;
+                    if ((g > 0) == increasing) {
+                        after = middle;
+                    } else {
+                        before = middle;
+                    }
+                }
+                addInterval(ephemeris.getStart().shiftedBy(after), increasing);
+            }
+            previous = current;
+            previousTime = time;
+        }
+
+    }
+
+    /**
+     * Searches the accesses of the current pair with adaptive steps. The Earth central angle between the device and
+     * the sub-satellite point cannot shrink faster than the maximum ground track rate, so while it exceeds the
+     * footprint (plus a margin) the search safely jumps ahead by the time needed to close the difference.
+     * Threshold crossings are bisected against the propagator down to TH_DETECTION
+     **/
+    private void accessAdaptive() {
+
+        Frame earthFrame = earth.getBodyFrame();
+        AbsoluteDate start = Utils.stamp2AD(time1);
+        double span = Utils.stamp2AD(time2).durationFrom(start);
+        double fineStep = minPassDuration > 0 ? Math.min(step, minPassDuration) : step;
+        double footprint = Math.toRadians(Utils.getLambdaMax(semiMajorAxis, eccentricity, Math.toDegrees(th)))
+                + Utils.FOOTPRINT_MARGIN;
+
+        Vector3D station = earth.transform(geodeticPoint);
+        Vector3D zenith = topocentricFrame.getZenith();
+        double sinTh = Math.sin(th);
+
+        double time = 0;
+        Vector3D position = tlePropagator.getPVCoordinates(start, earthFrame).getPosition();
+        double previous = sinElevation(position, station, zenith) - sinTh;
+
+        while (time < span) {
+            double jump = (Vector3D.angle(position, station) - footprint) / maxGroundTrackRate;
+            double next = Math.min(time + Math.max(fineStep, jump), span);
+            position = tlePropagator.getPVCoordinates(start.shiftedBy(next), earthFrame).getPosition();
+            double current = sinElevation(position, station, zenith) - sinTh;
+            if ((previous > 0) != (current > 0)) {
+                addInterval(refineCrossing(start.shiftedBy(time), start.shiftedBy(next), current > 0), current > 0);
+            }
+            previous = current;
+            time = next;
+        }
+
+    }
+
+    /**
+     * Samples sin(elevation) - sin(th) of the current pair on the scenario grid in one sweep, then solves for the
+     * threshold crossings with Brent's method down to TH_DETECTION. Besides sign changes, a sampled maximum below the
+     * threshold is refined when a parabola through its neighbours could still reach it: the elevation rate is solved
+     * for zero to find the true peak, and if the peak is above the threshold both of its crossings are solved.
+     * Pairs that never come close to the threshold cost one propagation per step and nothing else
+     **/
+    private void accessCoarseToFine() {
+
+        Frame earthFrame = earth.getBodyFrame();
+        AbsoluteDate start = Utils.stamp2AD(time1);
+        double span = Utils.stamp2AD(time2).durationFrom(start);
+        Vector3D station = earth.transform(geodeticPoint);
+        Vector3D zenith = topocentricFrame.getZenith();
+        double sinTh = Math.sin(th);
+
+        // Coarse pass, with the TEME to Earth-fixed rotation of each grid date shared by every pair
+        int size = (int) Math.ceil(span / step) + 1;
+        double[] times = new double[size];
+        double[] g = new double[size];
+        for (int i = 0; i < size; i++) {
+            times[i] = Math.min(i * step, span);
+            AbsoluteDate date = start.shiftedBy(times[i]);
+            Vector3D position = temeRotationCache.getTransform(date)
+                    .transformPosition(tlePropagator.getPVCoordinates(date).getPosition());
+            g[i] = sinElevation(position, station, zenith) - sinTh;
+        }
+
+        // Fine pass, only around the candidate windows, with the same TEME to Earth-fixed transform as the coarse
+        // one so both agree on the sign at the grid dates. Off-grid dates are not cached
+        Frame teme = FramesFactory.getTEME();
+        UnivariateFunction elevation = t -> {
+            AbsoluteDate date = start.shiftedBy(t);
+            return sinElevation(teme.getTransformTo(earthFrame, date)
+                    .transformPosition(tlePropagator.getPVCoordinates(date).getPosition()), station, zenith) - sinTh;
+        };
+        UnivariateFunction elevationRate = t -> {
+            AbsoluteDate date = start.shiftedBy(t);
+            return sinElevationRate(teme.getTransformTo(earthFrame, date)
+                    .transformPVCoordinates(tlePropagator.getPVCoordinates(date)), station, zenith);
+        };
+        BrentSolver solver = new BrentSolver(TH_DETECTION);
+
+        for (int i = 1; i < size; i++) {
+            if ((g[i - 1] > 0) != (g[i] > 0)) {
+                double crossing;
+                try {
+                    crossing = solver.solve(100, elevation, times[i - 1], times[i]);
+                } catch (MathIllegalArgumentException | MathIllegalStateException e) {
+                    // Grazing crossing lost to rounding, interpolate it from the coarse samples
+                    crossing = times[i - 1] + (times[i] - times[i - 1]) * g[i - 1] / (g[i - 1] - g[i]);
+                }
+                addInterval(start.shiftedBy(crossing), g[i] > 0);
+            } else if (g[i] <= 0 && i + 1 < size && g[i] > g[i - 1] && g[i] >= g[i + 1]
+                    && g[i] + Math.max(g[i] - g[i - 1], g[i] - g[i + 1]) > 0) {
+                if (elevationRate.value(times[i - 1]) <= 0 || elevationRate.value(times[i + 1]) >= 0) {
+                    continue;   // No single peak between the neighbours
+                }
+                try {
+                    double peak = solver.solve(100, elevationRate, times[i - 1], times[i + 1]);
+                    if (elevation.value(peak) > 0) {
+                        double rise = solver.solve(100, elevation, times[i - 1], peak);
+                        double set = solver.solve(100, elevation, peak, times[i + 1]);
+                        addInterval(start.shiftedBy(rise), true);
+                        addInterval(start.shiftedBy(set), false);
+                    }
+                } catch (MathIllegalArgumentException | MathIllegalStateException e) {
+                    // Peak too close to the threshold to bracket, the pass is shorter than TH_DETECTION
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Time derivative of sinElevation, for a station fixed in the frame of pv
+     **/
+    private static double sinElevationRate(PVCoordinates pv, Vector3D station, Vector3D zenith) {
+        Vector3D relative = pv.getPosition().subtract(station);
+        Vector3D velocity = pv.getVelocity();
+        double range = relative.getNorm();
+        return Vector3D.dotProduct(velocity, zenith) / range - Vector3D.dotProduct(relative, zenith)
+                * Vector3D.dotProduct(relative, velocity) / (range * range * range);
+    }
+
+    /**
+     * Searches the accesses of the current pair on the analytic J2 propagator, at the scenario step or with the
+     * adaptive footprint jumps of accessAdaptive, bisecting each threshold crossing down to TH_DETECTION
+     **/
+    private void accessAnalytic() {
+
+        AbsoluteDate start = Utils.stamp2AD(time1);
+        double offset = start.durationFrom(j2Propagator.getEpoch());
+        double span = Utils.stamp2AD(time2).durationFrom(start);
+        double fineStep = adaptiveStep && minPassDuration > 0 ? Math.min(step, minPassDuration) : step;
+        double footprint = Math.toRadians(Utils.getLambdaMax(semiMajorAxis, eccentricity, Math.toDegrees(th)))
+                + Utils.FOOTPRINT_MARGIN;
+
+        Vector3D station = earth.transform(geodeticPoint);
+        Vector3D zenith = topocentricFrame.getZenith();
+        double sinTh = Math.sin(th);
+        double[] pv = new double[6];
+
+        double time = 0;
+        double previous = sinElevationAnalytic(offset, pv, station, zenith) - sinTh;
+
+        while (time < span) {
+            double jump = adaptiveStep ? (Vector3D.angle(new Vector3D(pv[0], pv[1], pv[2]), station) - footprint)
+                    / maxGroundTrackRate : 0;
+            double next = Math.min(time + Math.max(fineStep, jump), span);
+            double current = sinElevationAnalytic(offset + next, pv, station, zenith) - sinTh;
+            if ((previous > 0) != (current > 0)) {
+                boolean increasing = current > 0;
+                double before = time;
+                double after = next;
+                while (after - before > TH_DETECTION) {
+                    double middle = (before + after) / 2;
+                    if ((sinElevationAnalytic(offset + middle, pv, station, zenith) - sinTh > 0) == increasing) {
+                        after = middle;
+                    } else {
+                        before = middle;
+                    }
+                }
+                addInterval(start.shiftedBy(after), increasing);
+                sinElevationAnalytic(offset + next, pv, station, zenith);   // Restore the state at next for the jump
+            }
+            previous = current;
+            time = next;
+        }
+
+    }
+
+    private double sinElevationAnalytic(double t, double[] pv, Vector3D station, Vector3D zenith) {
+        j2Propagator.propagate(t, pv);
+        double dx = pv[0] - station.getX();
+        double dy = pv[1] - station.getY();
+        double dz = pv[2] - station.getZ();
+        return (dx * zenith.getX() + dy * zenith.getY() + dz * zenith.getZ()) / Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    private static double sinElevation(Vector3D position, Vector3D station, Vector3D zenith) {
+        Vector3D relative = position.subtract(station);
+        return Vector3D.dotProduct(relative, zenith) / relative.getNorm();
+    }
+
+    /**
+     * Bisects the visibility threshold crossing between two dates, returning the bracket side after the crossing
+     **/
+    private AbsoluteDate refineCrossing(AbsoluteDate before, AbsoluteDate after, boolean increasing) {
+        while (after.durationFrom(before) > TH_DETECTION) {
+            AbsoluteDate middle = before.shiftedBy(after.durationFrom(before) / 2);
+            double g;
+            if (analytic) {
+                g = topocentricFrame.getElevation(j2Propagator.getPVCoordinates(middle).getPosition(),
+                        earth.getBodyFrame(), middle) - th;
+            } else {
+                SpacecraftState s = tlePropagator.propagate(middle);
+                g = topocentricFrame.getElevation(s.getPVCoordinates().getPosition(), s.getFrame(), middle) - th;
+            }
+            if ((g > 0) == increasing) {
+                after = middle;
+            } else {
+                before = middle;
+            }
+        }
+        return after;
+    }
+
+    private void addInterval(AbsoluteDate date, boolean dir) { // TODO add last contact within simulation end case
+        visible = dir;
         try {
             if (dir) {
-                contact = s.getDate().toDate(TimeScalesFactory.getUTC());
+                contact = date.toDate(TimeScalesFactory.getUTC());
             } else {
-                intervalList.add(new Interval(contact.getTime(), s.getDate().toDate(TimeScalesFactory.getUTC()).getTime(), this.device.getId(), this.satellite.getId()));
+                intervalList.add(new Interval(contact.getTime(), date.toDate(TimeScalesFactory.getUTC()).getTime(), this.device.getId(), this.satellite.getId()));
             }
         } catch (NullPointerException npe) {
             npe.printStackTrace();
@@ -236,18 +657,69 @@ public class Simulation implements Runnable {
         propagateAndGetPVD(Utils.stamp2AD(startTime), Utils.stamp2AD(endTime), stepInSeconds);
     }
 
+    /**
+     * Streams the scenario ephemeris of the current pair into a sink instead of storing it in getEphemerisList
+     **/
+    public void computePVD(EphemerisSink sink) {
+        propagateAndGetPVD(Utils.stamp2AD(time1), Utils.stamp2AD(time2), this.step, sink);
+    }
+
+    public void computePVDBetween(String startTime, String endTime, double stepInSeconds, EphemerisSink sink) {
+        propagateAndGetPVD(Utils.stamp2AD(startTime), Utils.stamp2AD(endTime), stepInSeconds, sink);
+    }
+
+    /**
+     * Computes the scenario ephemeris of the current pair into a columnar table, optionally stored off-heap
+     **/
+    public EphemerisTable computePVDTable(boolean offHeap) {
+        AbsoluteDate startDate = Utils.stamp2AD(time1);
+        AbsoluteDate endDate = Utils.stamp2AD(time2);
+        var table = new EphemerisTable((int) Math.ceil(endDate.durationFrom(startDate) / step) + 2, offHeap);
+        propagateAndGetPVD(startDate, endDate, this.step, table);
+        return table;
+    }
+
+    /**
+     * Returns a lazy iterator over the ephemeris of the current pair. Each sample is only computed when requested, so
+     * memory use does not grow with the time span. The pair must not be changed while iterating
+     **/
+    public Iterator<Ephemeris> ephemerisIterator(String startTime, String endTime, double stepInSeconds) {
+        return new EphemerisIterator(Utils.stamp2AD(startTime), Utils.stamp2AD(endTime), stepInSeconds);
+    }
+
+    /**
+     * Returns the satellite's position and velocity in the Earth-fixed frame, interpolated from the state cache when
+     * it is interpolated and covers the scenario, propagated otherwise
+     **/
+    public PVCoordinates propagate(AbsoluteDate date) {
+        if (isInterpolated()) {
+            return stateCache.getEphemeris(satellite).getPVCoordinates(date);
+        }
+        if (analytic) {
+            return j2Propagator.getPVCoordinates(date);
+        }
+        return tlePropagator.getPVCoordinates(date, earth.getBodyFrame());
+    }
+
+    private boolean isInterpolated() {
+        return stateCache != null && stateCache.isInterpolated() && stateCache.isAnalytic() == analytic
+                && stateCache.contains(time1, time2, step);
+    }
+
     private void propagateAndGetPVD(AbsoluteDate startDate, AbsoluteDate endDate, double step) {
+        ephemerisList.clear();
+        propagateAndGetPVD(startDate, endDate, step, (time, posX, posY, posZ, velX, velY, velZ, range, doppler) ->
+                ephemerisList.add(new Ephemeris(time, posX, posY, posZ, velX, velY, velZ, range, doppler)));
+    }
+
+    private void propagateAndGetPVD(AbsoluteDate startDate, AbsoluteDate endDate, double step, EphemerisSink sink) {
 
         long t0 = System.currentTimeMillis();
-        ephemerisList.clear();
         var lastPoint = false;
         AbsoluteDate pointerDate = startDate;
+        ItrfEphemeris ephemeris = isInterpolated() ? stateCache.getEphemeris(satellite) : null;
         while (pointerDate.compareTo(endDate) <= 0) {
-            // Get the position and velocity of spacecraft in station frame at any time
-            PVCoordinates pvInert = tlePropagator.propagate(pointerDate).getPVCoordinates();
-            var pvDevice = inertialFrame.getTransformTo(topocentricFrame, pointerDate).transformPVCoordinates(pvInert);
-
-            addEphemeris(pointerDate.toDate(TimeScalesFactory.getUTC()), pvDevice);
+            addEphemeris(pointerDate, getTopocentricPV(pointerDate, ephemeris), sink);
             pointerDate = pointerDate.shiftedBy(step);
 
             if (pointerDate.compareTo(endDate) > 0 && !lastPoint) {
@@ -259,7 +731,24 @@ public class Simulation implements Runnable {
         lastSimTime = System.currentTimeMillis() - t0;
     }
 
-    private void addEphemeris(Date date, PVCoordinates pvDevice) {
+    /**
+     * Returns the position and velocity of the satellite in the device's topocentric frame, from the interpolated
+     * ephemeris if given, propagated otherwise
+     **/
+    private PVCoordinates getTopocentricPV(AbsoluteDate date, ItrfEphemeris ephemeris) {
+        if (ephemeris != null) {
+            return earthToTopocentric.transformPVCoordinates(ephemeris.getPVCoordinates(date));
+        }
+        if (analytic) {
+            return earthToTopocentric.transformPVCoordinates(j2Propagator.getPVCoordinates(date));
+        }
+        // Shared inertial to Earth-fixed rotation of the date, then the device's fixed transform
+        PVCoordinates pvInert = tlePropagator.propagate(date).getPVCoordinates();
+        return earthToTopocentric.transformPVCoordinates(
+                earthRotationCache.getTransform(date).transformPVCoordinates(pvInert));
+    }
+
+    private void addEphemeris(AbsoluteDate date, PVCoordinates pvDevice, EphemerisSink sink) {
 
         // Get the satellite's position and velocity in reference to the station
         Vector3D pos = pvDevice.getPosition();
@@ -271,8 +760,8 @@ public class Simulation implements Runnable {
         // Calculate the doppler signal
         double doppler = Vector3D.dotProduct(pvDevice.getPosition(), pvDevice.getVelocity()) / range;
 
-        var ephemeris = new Ephemeris(date.getTime(), pos.getX(), pos.getY(), pos.getZ(), vel.getX(), vel.getY(), vel.getZ(), range, doppler);
-        ephemerisList.add(ephemeris);
+        sink.accept(date.toDate(TimeScalesFactory.getUTC()).getTime(), pos.getX(), pos.getY(), pos.getZ(),
+                vel.getX(), vel.getY(), vel.getZ(), range, doppler);
     }
 
     public List<Ephemeris> getEphemerisList() {
@@ -283,6 +772,47 @@ public class Simulation implements Runnable {
         return this.lastSimTime;
     }
 
+    /**
+     * Steps over [startDate, endDate] like propagateAndGetPVD, computing one sample per call to next
+     **/
+    private class EphemerisIterator implements Iterator<Ephemeris> {
+
+        private final AbsoluteDate endDate;
+        private final double step;
+        private final ItrfEphemeris ephemeris;
+        private AbsoluteDate pointerDate;
+        private boolean lastPoint = false;
+        private Ephemeris current;
+
+        EphemerisIterator(AbsoluteDate startDate, AbsoluteDate endDate, double step) {
+            this.endDate = endDate;
+            this.step = step;
+            this.ephemeris = isInterpolated() ? stateCache.getEphemeris(satellite) : null;
+            this.pointerDate = startDate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pointerDate.compareTo(endDate) <= 0;
+        }
+
+        @Override
+        public Ephemeris next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            addEphemeris(pointerDate, getTopocentricPV(pointerDate, ephemeris),
+                    (time, posX, posY, posZ, velX, velY, velZ, range, doppler) ->
+                            current = new Ephemeris(time, posX, posY, posZ, velX, velY, velZ, range, doppler));
+            pointerDate = pointerDate.shiftedBy(step);
+            if (pointerDate.compareTo(endDate) > 0 && !lastPoint) {
+                pointerDate = endDate;
+                lastPoint = true;
+            }
+            return current;
+        }
+    }
+
     @Override
     public void run() {
         computeAccess();
@@ -0,0 +1,125 @@
+package simulation;
+
+import org.orekit.bodies.OneAxisEllipsoid;
+import org.orekit.data.DataContext;
+import org.orekit.data.DataProvidersManager;
+import org.orekit.data.DirectoryCrawler;
+import org.orekit.data.ZipJarCrawler;
+import org.orekit.frames.Frame;
+import org.orekit.frames.FramesFactory;
+import org.orekit.time.AbsoluteDate;
+import org.orekit.time.TimeScale;
+import org.orekit.time.TimeScalesFactory;
+import org.orekit.utils.Constants;
+import org.orekit.utils.IERSConventions;
+import simulation.exceptions.OrekitDataException;
+import simulation.propagation.EarthRotationCache;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * Process-wide Orekit setup shared by every Simulation. The Orekit data is registered once on the default data
+ * context, from the orekit-data folder or, if it is missing, from an orekit-data.zip archive of it, and the Earth
+ * frame, inertial frame, UTC scale and Earth model are built once. All of them are immutable and thread-safe, so any
+ * number of Simulations, on any thread, can share them.
+ **/
+public final class SimulationContext {
+
+    public static final String DATA_FOLDER = "orekit-data";
+    public static final String DATA_SNAPSHOT = "orekit-data.zip";
+
+    private static volatile SimulationContext instance;
+
+    private final Frame earthFrame;
+    private final Frame inertialFrame;
+    private final TimeScale utc;
+    private final OneAxisEllipsoid earth;
+    private final EarthRotationCache earthRotationCache;
+    private final EarthRotationCache temeRotationCache;
+
+    private SimulationContext() {
+
+        var snapshot = new File(DATA_SNAPSHOT);
+        var orekitData = new File(DATA_FOLDER);
+        DataProvidersManager manager = DataContext.getDefault().getDataProvidersManager();
+        if (orekitData.exists()) {
+            manager.addProvider(new DirectoryCrawler(orekitData));
+        } else if (snapshot.isFile()) {    // Single-file deployments
+            manager.addProvider(new ZipJarCrawler(snapshot));
+        } else {
+            throw new OrekitDataException(String.format(Locale.US, "Failed to find %s folder or %s",
+                    orekitData.getAbsolutePath(), snapshot.getAbsolutePath()));
+        }
+
+        this.utc = TimeScalesFactory.getUTC();
+        this.earthFrame = FramesFactory.getITRF(IERSConventions.IERS_2010, true);
+        this.inertialFrame = FramesFactory.getEME2000();
+        this.earth = new OneAxisEllipsoid(Constants.WGS84_EARTH_EQUATORIAL_RADIUS,
+                Constants.WGS84_EARTH_FLATTENING,
+                earthFrame);
+        this.earthRotationCache = new EarthRotationCache(inertialFrame, earthFrame);
+        this.temeRotationCache = new EarthRotationCache(FramesFactory.getTEME(), earthFrame);
+
+        // Load the Earth orientation data now rather than in the middle of the first propagation
+        inertialFrame.getTransformTo(earthFrame, AbsoluteDate.J2000_EPOCH);
+
+    }
+
+    /**
+     * Returns the shared context, loading the Orekit data on first use
+     **/
+    public static SimulationContext get() {
+        SimulationContext context = instance;
+        if (context == null) {
+            synchronized (SimulationContext.class) {
+                context = instance;
+                if (context == null) {
+                    context = new SimulationContext();
+                    instance = context;
+                }
+            }
+        }
+        return context;
+    }
+
+    /**
+     * Returns the Earth-fixed frame (ITRF, IERS 2010 conventions, simple EOP)
+     **/
+    public Frame getEarthFrame() {
+        return earthFrame;
+    }
+
+    /**
+     * Returns the EME2000 inertial frame
+     **/
+    public Frame getInertialFrame() {
+        return inertialFrame;
+    }
+
+    public TimeScale getUTC() {
+        return utc;
+    }
+
+    /**
+     * Returns the WGS84 Earth ellipsoid attached to the Earth-fixed frame
+     **/
+    public OneAxisEllipsoid getEarth() {
+        return earth;
+    }
+
+    /**
+     * Returns the process-wide cache of EME2000 to Earth-fixed transforms
+     **/
+    public EarthRotationCache getEarthRotationCache() {
+        return earthRotationCache;
+    }
+
+    /**
+     * Returns the process-wide cache of TEME (the SGP4 output frame) to Earth-fixed transforms
+     **/
+    public EarthRotationCache getTemeRotationCache() {
+        return temeRotationCache;
+    }
+
+}
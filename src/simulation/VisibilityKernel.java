@@ -0,0 +1,206 @@
+package simulation;
+
+import org.orekit.time.AbsoluteDate;
+import org.orekit.time.TimeScalesFactory;
+import simulation.assets.objects.Device;
+import simulation.propagation.ItrfEphemeris;
+import simulation.structures.Interval;
+import simulation.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Batched visibility evaluation of many devices against one satellite. Device ECEF positions and local zenith unit
+ * vectors are kept in primitive columns, so each time step is a single tight loop over all devices instead of one
+ * Orekit topocentric frame and event detector per device-satellite pair.
+ **/
+public class VisibilityKernel {
+
+    private final int size;
+    private final int[] ids;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final double[] zenithX;
+    private final double[] zenithY;
+    private final double[] zenithZ;
+    private final double TH_DETECTION = 0.001; // 1 ms, as in Simulation
+
+    public VisibilityKernel(List<Device> devices) {
+
+        this(devices.size());
+
+        for (int d = 0; d < size; d++) {
+            Device device = devices.get(d);
+            Utils.lla2ecef(device);
+            ids[d] = device.getId();
+            x[d] = device.getXPos();
+            y[d] = device.getYPos();
+            z[d] = device.getZPos();
+            double lat = device.getLatRad();
+            double lon = device.getLonRad();
+            zenithX[d] = Math.cos(lat) * Math.cos(lon);
+            zenithY[d] = Math.cos(lat) * Math.sin(lon);
+            zenithZ[d] = Math.sin(lat);
+        }
+
+    }
+
+    private VisibilityKernel(int size) {
+        this.size = size;
+        ids = new int[size];
+        x = new double[size];
+        y = new double[size];
+        z = new double[size];
+        zenithX = new double[size];
+        zenithY = new double[size];
+        zenithZ = new double[size];
+    }
+
+    /**
+     * Returns a kernel over the devices at the given positions of this one
+     **/
+    public VisibilityKernel subset(List<Integer> indices) {
+        VisibilityKernel subset = new VisibilityKernel(indices.size());
+        for (int k = 0; k < indices.size(); k++) {
+            int d = indices.get(k);
+            subset.ids[k] = ids[d];
+            subset.x[k] = x[d];
+            subset.y[k] = y[d];
+            subset.z[k] = z[d];
+            subset.zenithX[k] = zenithX[d];
+            subset.zenithY[k] = zenithY[d];
+            subset.zenithZ[k] = zenithZ[d];
+        }
+        return subset;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Evaluates, for every device, the sine of the satellite's elevation minus the sine of the threshold.
+     * Positive values mean the satellite is in view
+     **/
+    public void visibility(double satX, double satY, double satZ, double sinTh, double[] out) {
+        for (int d = 0; d < size; d++) {
+            double dx = satX - x[d];
+            double dy = satY - y[d];
+            double dz = satZ - z[d];
+            out[d] = (dx * zenithX[d] + dy * zenithY[d] + dz * zenithZ[d]) / Math.sqrt(dx * dx + dy * dy + dz * dz) - sinTh;
+        }
+    }
+
+    /**
+     * Computes the access intervals of every device with one satellite. The satellite is stepped once over the
+     * scenario: on the ephemeris samples, or every step seconds if the ephemeris is interpolated. Crossings are
+     * bisected on the interpolated ephemeris down to TH_DETECTION. As in Simulation, a contact still open at the end
+     * of the scenario is not reported.
+     *
+     * @return the intervals of each device, in the order the devices were given
+     **/
+    public List<List<Interval>> computeAccess(ItrfEphemeris ephemeris, int satelliteId, double th, double step,
+                                              boolean interpolated) {
+        long[] openContacts = new long[size];
+        Arrays.fill(openContacts, -1);
+        return computeAccess(ephemeris, satelliteId, th, step, interpolated, 0, openContacts);
+    }
+
+    /**
+     * Same as computeAccess, starting from seconds after the ephemeris start. On input openContacts holds, per device,
+     * the unix time in ms of a contact already open at that time (-1 if none). On output it holds the contacts still
+     * open at the end of the ephemeris, as in Simulation.getOpenContact
+     **/
+    public List<List<Interval>> computeAccess(ItrfEphemeris ephemeris, int satelliteId, double th, double step,
+                                              boolean interpolated, double from, long[] openContacts) {
+
+        double sinTh = Math.sin(th);
+        double span = ephemeris.getSpan();
+        double[] pv = new double[6];
+        double[] previous = new double[size];
+        double[] current = new double[size];
+        long[] contact = new long[size];
+        List<List<Interval>> intervals = new ArrayList<>(size);
+        for (int d = 0; d < size; d++) {
+            intervals.add(new ArrayList<>());
+        }
+
+        long startUnix = toUnix(ephemeris.getStart().shiftedBy(from));
+        for (int d = 0; d < size; d++) {
+            contact[d] = openContacts[d] >= 0 ? openContacts[d] : startUnix;
+        }
+
+        int sample = (int) Math.round(from / ephemeris.getStep());
+        if (interpolated) {
+            ephemeris.interpolate(from, pv);
+            visibility(pv[0], pv[1], pv[2], sinTh, previous);
+        } else {
+            visibility(ephemeris.getX(sample), ephemeris.getY(sample), ephemeris.getZ(sample), sinTh, previous);
+        }
+
+        double previousTime = from;
+        sample++;
+        while (previousTime < span) {
+
+            double time;
+            if (interpolated) {
+                time = Math.min(previousTime + step, span);
+                ephemeris.interpolate(time, pv);
+                visibility(pv[0], pv[1], pv[2], sinTh, current);
+            } else {
+                time = ephemeris.getTime(sample);
+                visibility(ephemeris.getX(sample), ephemeris.getY(sample), ephemeris.getZ(sample), sinTh, current);
+                sample++;
+            }
+
+            for (int d = 0; d < size; d++) {
+                if ((previous[d] > 0) != (current[d] > 0)) {
+                    boolean increasing = current[d] > 0;
+                    long crossing = toUnix(ephemeris.getStart().shiftedBy(
+                            refineCrossing(ephemeris, d, previousTime, time, increasing, sinTh, pv)));
+                    if (increasing) {
+                        contact[d] = crossing;
+                    } else {
+                        intervals.get(d).add(new Interval(contact[d], crossing, ids[d], satelliteId));
+                    }
+                }
+            }
+
+            double[] swap = previous;
+            previous = current;
+            current = swap;
+            previousTime = time;
+        }
+
+        for (int d = 0; d < size; d++) {
+            openContacts[d] = previous[d] > 0 ? contact[d] : -1;
+        }
+        return intervals;
+    }
+
+    /**
+     * Bisects the crossing of one device between two times, returning the bracket side after the crossing
+     **/
+    private double refineCrossing(ItrfEphemeris ephemeris, int d, double before, double after, boolean increasing,
+                                  double sinTh, double[] pv) {
+        while (after - before > TH_DETECTION) {
+            double middle = (before + after) / 2;
+            double g = ephemeris.interpolateSinElevation(middle, pv, x[d], y[d], z[d], zenithX[d], zenithY[d], zenithZ[d])
+                    - sinTh;
+            if ((g > 0) == increasing) {
+                after = middle;
+            } else {
+                before = middle;
+            }
+        }
+        return after;
+    }
+
+    private static long toUnix(AbsoluteDate date) {
+        return date.toDate(TimeScalesFactory.getUTC()).getTime();
+    }
+
+}
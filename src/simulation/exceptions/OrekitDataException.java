@@ -0,0 +1,17 @@
+package simulation.exceptions;
+
+/**
+ * Thrown when the Orekit data needed by the simulations cannot be found.
+ */
+public class OrekitDataException extends RuntimeException {
+    private final static long serialVersionUID = 4612880337514739420L;
+
+    /**
+     * OrekitDataException constructor
+     *
+     * @param s java.lang.String
+     */
+    public OrekitDataException(String s) {
+        super(s);
+    }
+}
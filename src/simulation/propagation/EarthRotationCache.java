@@ -0,0 +1,94 @@
+package simulation.propagation;
+
+import org.orekit.frames.Frame;
+import org.orekit.frames.Transform;
+import org.orekit.time.AbsoluteDate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-indexed cache of inertial to Earth-fixed transforms. The transform at a date only depends on the Earth's
+ * orientation, so it is computed once per time step and shared by every device and satellite stepping on the same
+ * time grid; each device then only applies its own fixed Earth-fixed to topocentric transform.
+ * The least recently used dates are evicted above the capacity, which should cover a whole scenario: every pair
+ * sweeps the full time grid, so a smaller cache keeps evicting the dates the next pair needs first.
+ **/
+public class EarthRotationCache {
+
+    public static final int DEFAULT_CAPACITY = 20160;   // Two weeks at 60 s
+
+    private final Frame inertialFrame;
+    private final Frame earthFrame;
+    private final Map<AbsoluteDate, Transform> transforms;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public EarthRotationCache(Frame inertialFrame, Frame earthFrame) {
+        this(inertialFrame, earthFrame, DEFAULT_CAPACITY);
+    }
+
+    public EarthRotationCache(Frame inertialFrame, Frame earthFrame, int capacity) {
+        this.inertialFrame = inertialFrame;
+        this.earthFrame = earthFrame;
+        this.transforms = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<AbsoluteDate, Transform> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the transform from the inertial frame to the Earth-fixed frame at a date
+     **/
+    public Transform getTransform(AbsoluteDate date) {
+
+        Transform transform;
+        synchronized (transforms) {
+            transform = transforms.get(date);
+        }
+        if (transform != null) {
+            hits.incrementAndGet();
+            return transform;
+        }
+
+        misses.incrementAndGet();
+        transform = inertialFrame.getTransformTo(earthFrame, date);  // Computed outside the lock, transforms are immutable
+        synchronized (transforms) {
+            transforms.put(date, transform);
+        }
+        return transform;
+
+    }
+
+    public Frame getInertialFrame() {
+        return inertialFrame;
+    }
+
+    public Frame getEarthFrame() {
+        return earthFrame;
+    }
+
+    public int size() {
+        synchronized (transforms) {
+            return transforms.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public void clear() {
+        synchronized (transforms) {
+            transforms.clear();
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package simulation.propagation;
+
+import org.orekit.propagation.analytical.tle.TLE;
+import org.orekit.time.AbsoluteDate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent store of sampled satellite ephemerides, one file per satellite orbit, scenario window and sampling step.
+ * Files are memory-mapped back read-only, so a later run, or a rerun after a crash, reads the states straight from
+ * the page cache instead of propagating again.
+ * The key covers the TLE epoch and elements only, not the satellite number, so the same orbit is shared by every
+ * candidate constellation that contains it.
+ **/
+public class EphemerisDiskCache {
+
+    private static final long MAGIC = 0x4350474445504831L;  // "CPGDEPH1"
+    private static final int HEADER = 24;   // magic, size, reserved, step
+
+    private final Path directory;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public EphemerisDiskCache(String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    /**
+     * Returns the file name of an ephemeris: a hash of the orbit, window and step
+     **/
+    public static String getKey(TLE tle, AbsoluteDate start, AbsoluteDate end, double step) {
+        String orbit = tle.getLine1().substring(18, 68) + tle.getLine2().substring(8, 68);
+        String key = orbit + "|" + start + "|" + end + "|" + Double.doubleToLongBits(step);
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.US_ASCII))) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.append(".eph").toString();
+        } catch (NoSuchAlgorithmException e) {   // Every JVM provides SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Maps a stored ephemeris, or returns null if there is none for the key
+     **/
+    public ItrfEphemeris load(String key, AbsoluteDate start) {
+
+        Path path = directory.resolve(key);
+        if (!Files.isRegularFile(path)) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER) {
+                return corrupt(path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            int size = buffer.getInt(8);
+            if (buffer.getLong(0) != MAGIC || size < 0 || channel.size() != HEADER + 7L * size * Double.BYTES) {
+                return corrupt(path);
+            }
+            double step = buffer.getDouble(16);
+            ItrfEphemeris ephemeris = new ItrfEphemeris(start, step, column(buffer, HEADER, size),
+                    column(buffer, HEADER + 8 * size, 3 * size), column(buffer, HEADER + 32 * size, 3 * size));
+            hits.incrementAndGet();
+            return ephemeris;
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            return corrupt(path);
+        } catch (IOException e) {
+            e.printStackTrace();
+            misses.incrementAndGet();
+            return null;
+        }
+
+    }
+
+    private ItrfEphemeris corrupt(Path path) {
+        System.out.println("Ignoring corrupt ephemeris file " + path);
+        misses.incrementAndGet();
+        return null;
+    }
+
+    private static DoubleBuffer column(ByteBuffer buffer, int offset, int length) {
+        return buffer.slice(offset, length * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+    }
+
+    /**
+     * Writes an ephemeris under a key. The file is written aside and moved into place, so an interrupted run never
+     * leaves a partial file behind
+     **/
+    public void store(String key, ItrfEphemeris ephemeris) {
+
+        int size = ephemeris.size();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER + 7 * size * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(MAGIC).putInt(size).putInt(0).putDouble(ephemeris.getStep());
+        buffer.asDoubleBuffer().put(ephemeris.getTimes());
+        buffer.position(HEADER + 8 * size);
+        buffer.asDoubleBuffer().put(ephemeris.getPositions());
+        buffer.position(HEADER + 32 * size);
+        buffer.asDoubleBuffer().put(ephemeris.getVelocities());
+        buffer.rewind();
+
+        try {
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, key, ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temporary, directory.resolve(key), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+    }
+
+    public String getDirectory() {
+        return directory.toString();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+}
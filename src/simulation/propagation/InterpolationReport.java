@@ -0,0 +1,101 @@
+package simulation.propagation;
+
+/**
+ * This class stores the result of validating an interpolated ephemeris against the full propagator
+ **/
+public class InterpolationReport {
+
+    private final int satelliteId;
+    private final double sampleStep;
+    private final int samples;
+    private final double errorBound;
+    private final double maxPositionError;
+    private final double rmsPositionError;
+    private final double maxVelocityError;
+    private final double propagatorQueryTime;
+    private final double interpolatedQueryTime;
+
+    public InterpolationReport(int satelliteId, double sampleStep, int samples, double errorBound,
+                               double maxPositionError, double rmsPositionError, double maxVelocityError,
+                               double propagatorQueryTime, double interpolatedQueryTime) {
+        this.satelliteId = satelliteId;
+        this.sampleStep = sampleStep;
+        this.samples = samples;
+        this.errorBound = errorBound;
+        this.maxPositionError = maxPositionError;
+        this.rmsPositionError = rmsPositionError;
+        this.maxVelocityError = maxVelocityError;
+        this.propagatorQueryTime = propagatorQueryTime;
+        this.interpolatedQueryTime = interpolatedQueryTime;
+    }
+
+    public int getSatelliteId() {
+        return satelliteId;
+    }
+
+    /**
+     * Returns the interval between ephemeris samples in seconds
+     **/
+    public double getSampleStep() {
+        return sampleStep;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * Returns the requested maximum position error in meters
+     **/
+    public double getErrorBound() {
+        return errorBound;
+    }
+
+    /**
+     * Returns the largest measured position error in meters
+     **/
+    public double getMaxPositionError() {
+        return maxPositionError;
+    }
+
+    public double getRmsPositionError() {
+        return rmsPositionError;
+    }
+
+    /**
+     * Returns the largest measured velocity error in meters per second
+     **/
+    public double getMaxVelocityError() {
+        return maxVelocityError;
+    }
+
+    /**
+     * Returns the mean time of a full propagator query in microseconds
+     **/
+    public double getPropagatorQueryTime() {
+        return propagatorQueryTime;
+    }
+
+    /**
+     * Returns the mean time of an interpolated query in microseconds
+     **/
+    public double getInterpolatedQueryTime() {
+        return interpolatedQueryTime;
+    }
+
+    public double getSpeedup() {
+        return propagatorQueryTime / interpolatedQueryTime;
+    }
+
+    public boolean isWithinBound() {
+        return maxPositionError <= errorBound;
+    }
+
+    @Override
+    public String toString() {
+        return satelliteId + "," + sampleStep + "," + samples + "," + errorBound + "," + maxPositionError + ","
+                + rmsPositionError + "," + maxVelocityError + "," + propagatorQueryTime + "," + interpolatedQueryTime
+                + "," + getSpeedup();
+    }
+
+}
@@ -0,0 +1,276 @@
+package simulation.propagation;
+
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
+import org.orekit.frames.Frame;
+import org.orekit.propagation.Propagator;
+import org.orekit.time.AbsoluteDate;
+import org.orekit.utils.PVCoordinates;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Satellite positions and velocities sampled in the Earth-fixed (ITRF) frame on a fixed time grid.
+ * Samples are taken every step seconds from the start date, plus a last sample at the end date. States between
+ * samples are obtained by cubic Hermite interpolation of the bracketing positions and velocities.
+ * Samples are held in heap arrays, or in buffers mapped from an EphemerisDiskCache file without copying them.
+ * Instances are immutable and can be shared between threads.
+ **/
+public class ItrfEphemeris {
+
+    private final AbsoluteDate start;
+    private final double step;
+    private final int size;
+    private final DoubleBuffer times;       // seconds since start
+    private final DoubleBuffer position;    // x, y, z per sample [m]
+    private final DoubleBuffer velocity;    // vx, vy, vz per sample [m/s]
+
+    private ItrfEphemeris(AbsoluteDate start, double step, double[] times, double[] position, double[] velocity) {
+        this(start, step, DoubleBuffer.wrap(times), DoubleBuffer.wrap(position), DoubleBuffer.wrap(velocity));
+    }
+
+    ItrfEphemeris(AbsoluteDate start, double step, DoubleBuffer times, DoubleBuffer position, DoubleBuffer velocity) {
+        this.start = start;
+        this.step = step;
+        this.size = times.capacity();
+        this.times = times;
+        this.position = position;
+        this.velocity = velocity;
+    }
+
+    /**
+     * Propagates once over [start, end] and stores every sample in the given Earth-fixed frame
+     **/
+    public static ItrfEphemeris sample(Propagator propagator, Frame earthFrame, AbsoluteDate start, AbsoluteDate end,
+                                       double step) {
+        return sample(states(propagator, earthFrame, start), start, end, step);
+    }
+
+    /**
+     * Samples the analytic J2 propagator over [start, end], already in the Earth-fixed frame
+     **/
+    public static ItrfEphemeris sample(J2KeplerPropagator propagator, AbsoluteDate start, AbsoluteDate end, double step) {
+        return sample(states(propagator, start), start, end, step);
+    }
+
+    private static ItrfEphemeris sample(StateSource source, AbsoluteDate start, AbsoluteDate end, double step) {
+
+        int size = getSize(end.durationFrom(start), step);
+        double[] times = new double[size];
+        double[] position = new double[3 * size];
+        double[] velocity = new double[3 * size];
+
+        fill(source, end.durationFrom(start), step, times, position, velocity, 0);
+        return new ItrfEphemeris(start, step, times, position, velocity);
+    }
+
+    /**
+     * Returns a copy of this ephemeris continued up to a later end date. The samples on the regular grid are kept,
+     * the final partial sample is dropped and the grid is resumed from there, so only the new span is propagated
+     **/
+    public ItrfEphemeris extend(Propagator propagator, Frame earthFrame, AbsoluteDate end) {
+        return extend(states(propagator, earthFrame, start), end);
+    }
+
+    public ItrfEphemeris extend(J2KeplerPropagator propagator, AbsoluteDate end) {
+        return extend(states(propagator, start), end);
+    }
+
+    private ItrfEphemeris extend(StateSource source, AbsoluteDate end) {
+
+        double span = end.durationFrom(start);
+        int size = getSize(span, step);
+        int kept = Math.min((int) Math.floor(getSpan() / step) + 1, size);
+
+        double[] times = new double[size];
+        double[] position = new double[3 * size];
+        double[] velocity = new double[3 * size];
+        this.times.get(0, times, 0, kept);
+        this.position.get(0, position, 0, 3 * kept);
+        this.velocity.get(0, velocity, 0, 3 * kept);
+
+        fill(source, span, step, times, position, velocity, kept);
+        return new ItrfEphemeris(start, step, times, position, velocity);
+    }
+
+    private static int getSize(double span, double step) {
+        int steps = (int) Math.floor(span / step);
+        return steps * step < span ? steps + 2 : steps + 1;
+    }
+
+    /**
+     * Earth-fixed state x, y, z, vx, vy, vz at t seconds since the ephemeris start
+     **/
+    private interface StateSource {
+        void getState(double t, double[] pv);
+    }
+
+    private static StateSource states(Propagator propagator, Frame earthFrame, AbsoluteDate start) {
+        return (t, pv) -> {
+            PVCoordinates state = propagator.getPVCoordinates(start.shiftedBy(t), earthFrame);
+            Vector3D p = state.getPosition();
+            Vector3D v = state.getVelocity();
+            pv[0] = p.getX();
+            pv[1] = p.getY();
+            pv[2] = p.getZ();
+            pv[3] = v.getX();
+            pv[4] = v.getY();
+            pv[5] = v.getZ();
+        };
+    }
+
+    private static StateSource states(J2KeplerPropagator propagator, AbsoluteDate start) {
+        double offset = start.durationFrom(propagator.getEpoch());
+        return (t, pv) -> propagator.propagate(offset + t, pv);
+    }
+
+    private static void fill(StateSource source, double span, double step, double[] times, double[] position,
+                             double[] velocity, int from) {
+        double[] pv = new double[6];
+        for (int i = from; i < times.length; i++) {
+            times[i] = Math.min(i * step, span);
+            source.getState(times[i], pv);
+            position[3 * i] = pv[0];
+            position[3 * i + 1] = pv[1];
+            position[3 * i + 2] = pv[2];
+            velocity[3 * i] = pv[3];
+            velocity[3 * i + 1] = pv[4];
+            velocity[3 * i + 2] = pv[5];
+        }
+    }
+
+    public AbsoluteDate getStart() {
+        return start;
+    }
+
+    public double getStep() {
+        return step;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the time of the i-th sample in seconds since the start date
+     **/
+    public double getTime(int i) {
+        return times.get(i);
+    }
+
+    public AbsoluteDate getDate(int i) {
+        return start.shiftedBy(times.get(i));
+    }
+
+    public double getX(int i) {
+        return position.get(3 * i);
+    }
+
+    public double getY(int i) {
+        return position.get(3 * i + 1);
+    }
+
+    public double getZ(int i) {
+        return position.get(3 * i + 2);
+    }
+
+    public double getVelX(int i) {
+        return velocity.get(3 * i);
+    }
+
+    public double getVelY(int i) {
+        return velocity.get(3 * i + 1);
+    }
+
+    public double getVelZ(int i) {
+        return velocity.get(3 * i + 2);
+    }
+
+    /**
+     * Returns the end of the sampled span in seconds since the start date
+     **/
+    public double getSpan() {
+        return times.get(size - 1);
+    }
+
+    /**
+     * Returns the raw sample columns, for persisting them
+     **/
+    DoubleBuffer getTimes() {
+        return times.duplicate();
+    }
+
+    DoubleBuffer getPositions() {
+        return position.duplicate();
+    }
+
+    DoubleBuffer getVelocities() {
+        return velocity.duplicate();
+    }
+
+    /**
+     * Hermite-interpolates the state at t seconds since the start date. Writes x, y, z, vx, vy, vz into pv
+     **/
+    public void interpolate(double t, double[] pv) {
+
+        int i = Math.max(0, Math.min((int) (t / step), size - 2));
+        double h = times.get(i + 1) - times.get(i);
+        double s = (t - times.get(i)) / h;
+        double s2 = s * s;
+        double s3 = s2 * s;
+
+        // Hermite basis functions and their derivatives with respect to s
+        double h00 = 2 * s3 - 3 * s2 + 1;
+        double h10 = (s3 - 2 * s2 + s) * h;
+        double h01 = -2 * s3 + 3 * s2;
+        double h11 = (s3 - s2) * h;
+        double d00 = (6 * s2 - 6 * s) / h;
+        double d10 = 3 * s2 - 4 * s + 1;
+        double d01 = (-6 * s2 + 6 * s) / h;
+        double d11 = 3 * s2 - 2 * s;
+
+        for (int k = 0; k < 3; k++) {
+            double p0 = position.get(3 * i + k);
+            double v0 = velocity.get(3 * i + k);
+            double p1 = position.get(3 * i + 3 + k);
+            double v1 = velocity.get(3 * i + 3 + k);
+            pv[k] = h00 * p0 + h10 * v0 + h01 * p1 + h11 * v1;
+            pv[k + 3] = d00 * p0 + d10 * v0 + d01 * p1 + d11 * v1;
+        }
+
+    }
+
+    /**
+     * Hermite-interpolates the state at the given date, in the Earth-fixed frame the ephemeris was sampled in
+     **/
+    public PVCoordinates getPVCoordinates(AbsoluteDate date) {
+        double[] pv = new double[6];
+        interpolate(date.durationFrom(start), pv);
+        return new PVCoordinates(new Vector3D(pv[0], pv[1], pv[2]), new Vector3D(pv[3], pv[4], pv[5]));
+    }
+
+    /**
+     * Returns the sine of the elevation of the i-th sample as seen from an Earth-fixed station with the given
+     * position and local zenith unit vector
+     **/
+    public double getSinElevation(int i, double stationX, double stationY, double stationZ,
+                                  double zenithX, double zenithY, double zenithZ) {
+        double dx = position.get(3 * i) - stationX;
+        double dy = position.get(3 * i + 1) - stationY;
+        double dz = position.get(3 * i + 2) - stationZ;
+        return (dx * zenithX + dy * zenithY + dz * zenithZ) / Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Same as getSinElevation, for the interpolated position at t seconds since the start date. The pv array is
+     * used as scratch space so repeated calls do not allocate
+     **/
+    public double interpolateSinElevation(double t, double[] pv, double stationX, double stationY, double stationZ,
+                                          double zenithX, double zenithY, double zenithZ) {
+        interpolate(t, pv);
+        double dx = pv[0] - stationX;
+        double dy = pv[1] - stationY;
+        double dz = pv[2] - stationZ;
+        return (dx * zenithX + dy * zenithY + dz * zenithZ) / Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+}
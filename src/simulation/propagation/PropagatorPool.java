@@ -0,0 +1,84 @@
+package simulation.propagation;
+
+import org.orekit.propagation.analytical.tle.TLEPropagator;
+import simulation.assets.objects.Satellite;
+import simulation.utils.Utils;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of ready SGP4 propagators, one per satellite per thread. A propagator is built the first time a thread asks
+ * for a satellite, and later requests get the same propagator back with its event detectors cleared, so repeated
+ * pairs skip the TLE generation and propagator initialisation. Entries are weakly keyed by satellite, so they are
+ * dropped together with the satellites of a discarded constellation.
+ * Satellites are expected not to change their orbit once they have been used.
+ **/
+public class PropagatorPool {
+
+    private static final PropagatorPool SHARED = new PropagatorPool();
+
+    private final ThreadLocal<Map<Satellite, TLEPropagator>> propagators = ThreadLocal.withInitial(WeakHashMap::new);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Returns the pool shared by every Simulation
+     **/
+    public static PropagatorPool getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the calling thread's propagator for a satellite, without any event detector
+     **/
+    public TLEPropagator acquire(Satellite satellite) {
+        Map<Satellite, TLEPropagator> threadPropagators = propagators.get();
+        TLEPropagator propagator = threadPropagators.get(satellite);
+        if (propagator == null) {
+            misses.incrementAndGet();
+            propagator = TLEPropagator.selectExtrapolator(Utils.satelliteTLE(satellite));
+            threadPropagators.put(satellite, propagator);
+        } else {
+            hits.incrementAndGet();
+            propagator.clearEventsDetectors();
+        }
+        return propagator;
+    }
+
+    /**
+     * Drops the calling thread's propagators
+     **/
+    public void clear() {
+        propagators.get().clear();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the fraction of requests served by an existing propagator
+     **/
+    public double getReuseRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "Propagator pool - reused: " + hits.get() + " - created: " + misses.get() + " - reuse ratio: "
+                + Math.round(getReuseRatio() * 1000.0) / 10.0 + "%";
+    }
+
+}
@@ -0,0 +1,229 @@
+package simulation.propagation;
+
+import org.orekit.frames.Frame;
+import org.orekit.propagation.analytical.tle.TLE;
+import org.orekit.propagation.analytical.tle.TLEPropagator;
+import org.orekit.time.AbsoluteDate;
+import org.orekit.utils.PVCoordinates;
+import simulation.SimulationContext;
+import simulation.assets.objects.Satellite;
+import simulation.utils.Utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-scenario cache of satellite states. Each satellite is propagated once over the scenario window, and the
+ * resulting Earth-fixed ephemeris is shared by every device that is checked against it.
+ * Without an error bound the satellites are sampled on the scenario time grid. With an error bound they are sampled
+ * at the coarsest step whose Hermite interpolation error stays below it, and queried by interpolation.
+ * In analytic mode the samples come from the J2KeplerPropagator instead of SGP4.
+ **/
+public class SatelliteStateCache {
+
+    private final String startTime;
+    private final String endTime;
+    private final double step;
+    private final double maxPositionError;
+    private final AbsoluteDate start;
+    private final AbsoluteDate end;
+    private final Frame earthFrame = SimulationContext.get().getEarthFrame();
+    private final Map<Satellite, ItrfEphemeris> ephemerides = new ConcurrentHashMap<>();
+    private SatelliteStateCache previous;   // Shorter cache this one extends, if any
+    private EphemerisDiskCache diskCache;
+    private boolean analytic = false;
+
+    public SatelliteStateCache(String startTime, String endTime, double step) {
+        this(startTime, endTime, step, 0);
+    }
+
+    /**
+     * @param maxPositionError maximum interpolation position error in meters, 0 to sample on the scenario grid
+     **/
+    public SatelliteStateCache(String startTime, String endTime, double step, double maxPositionError) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.step = step;
+        this.maxPositionError = maxPositionError;
+        this.start = Utils.stamp2AD(startTime);
+        this.end = Utils.stamp2AD(endTime);
+    }
+
+    /**
+     * Returns the ephemeris of a satellite, propagating it the first time it is requested
+     **/
+    public ItrfEphemeris getEphemeris(Satellite satellite) {
+        return ephemerides.computeIfAbsent(satellite, this::propagate);
+    }
+
+    private ItrfEphemeris propagate(Satellite satellite) {
+
+        TLE tle = Utils.satelliteTLE(satellite);
+        double sampleStep = isInterpolated() ? getSampleStep(tle, maxPositionError) : step;
+        String key = diskCache != null ? EphemerisDiskCache.getKey(tle, start, end, sampleStep) : null;
+        if (key != null && analytic) {
+            key = "j2-" + key;
+        }
+        if (key != null) {
+            ItrfEphemeris stored = diskCache.load(key, start);
+            if (stored != null) {
+                return stored;
+            }
+        }
+
+        ItrfEphemeris shorter = previous != null ? previous.ephemerides.get(satellite) : null;
+        ItrfEphemeris ephemeris;
+        if (analytic) {
+            J2KeplerPropagator propagator = J2KeplerPropagator.of(satellite, earthFrame);
+            ephemeris = shorter != null ? shorter.extend(propagator, end)
+                    : ItrfEphemeris.sample(propagator, start, end, sampleStep);
+        } else {
+            TLEPropagator propagator = TLEPropagator.selectExtrapolator(tle);
+            ephemeris = shorter != null ? shorter.extend(propagator, earthFrame, end)
+                    : ItrfEphemeris.sample(propagator, earthFrame, start, end, sampleStep);
+        }
+        if (key != null) {
+            diskCache.store(key, ephemeris);
+        }
+        return ephemeris;
+
+    }
+
+    /**
+     * Sets a persistent store that ephemerides are loaded from before propagating, and saved to after, null for none
+     **/
+    public void setDiskCache(EphemerisDiskCache diskCache) {
+        this.diskCache = diskCache;
+    }
+
+    /**
+     * Samples the satellites with the analytic J2 propagator instead of SGP4
+     **/
+    public void setAnalytic(boolean analytic) {
+        this.analytic = analytic;
+    }
+
+    public boolean isAnalytic() {
+        return analytic;
+    }
+
+    /**
+     * Returns a cache for the same start date and step ending at a later date. Ephemerides already propagated here
+     * are continued from their last grid sample instead of being propagated again from the start
+     **/
+    public SatelliteStateCache extendTo(String endTime) {
+        SatelliteStateCache extended = new SatelliteStateCache(startTime, endTime, step, maxPositionError);
+        extended.previous = this;
+        extended.diskCache = diskCache;
+        extended.analytic = analytic;
+        return extended;
+    }
+
+    /**
+     * Returns the sampling step in seconds for which the cubic Hermite error bound h^4 / 384 * max|r''''| stays
+     * below the given position error. The fourth derivative is bounded by r * w^4, with r the apogee radius and w the
+     * perigee angular rate plus the Earth rotation rate, since the states are expressed in the Earth-fixed frame
+     **/
+    public static double getSampleStep(TLE tle, double maxPositionError) {
+        double n = tle.getMeanMotion();
+        double e = tle.getE();
+        double a = Math.cbrt(Utils.MU / (n * n));
+        double rate = Utils.getMaxGroundTrackRate(n, e);
+        return Math.pow(384 * maxPositionError / (a * (1 + e) * Math.pow(rate, 4)), 0.25);
+    }
+
+    /**
+     * Compares the interpolated ephemeris of a satellite against full SGP4 propagation at the middle of every
+     * sampling interval, where the interpolation error peaks, and measures the query time of both
+     **/
+    public InterpolationReport validate(Satellite satellite) {
+
+        ItrfEphemeris ephemeris = getEphemeris(satellite);
+        TLEPropagator propagator = TLEPropagator.selectExtrapolator(Utils.satelliteTLE(satellite));
+        int checks = ephemeris.size() - 1;
+        double[] pv = new double[6];
+
+        double maxPosition = 0;
+        double maxVelocity = 0;
+        double sumSquares = 0;
+        long propagatorTime = 0;
+        long interpolatedTime = 0;
+
+        for (int i = 0; i < checks; i++) {
+            double t = (ephemeris.getTime(i) + ephemeris.getTime(i + 1)) / 2;
+
+            long t0 = System.nanoTime();
+            PVCoordinates reference = propagator.getPVCoordinates(start.shiftedBy(t), earthFrame);
+            long t1 = System.nanoTime();
+            ephemeris.interpolate(t, pv);
+            long t2 = System.nanoTime();
+            propagatorTime += t1 - t0;
+            interpolatedTime += t2 - t1;
+
+            double dx = pv[0] - reference.getPosition().getX();
+            double dy = pv[1] - reference.getPosition().getY();
+            double dz = pv[2] - reference.getPosition().getZ();
+            double positionError = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            double dvx = pv[3] - reference.getVelocity().getX();
+            double dvy = pv[4] - reference.getVelocity().getY();
+            double dvz = pv[5] - reference.getVelocity().getZ();
+            maxPosition = Math.max(maxPosition, positionError);
+            maxVelocity = Math.max(maxVelocity, Math.sqrt(dvx * dvx + dvy * dvy + dvz * dvz));
+            sumSquares += positionError * positionError;
+        }
+
+        return new InterpolationReport(satellite.getId(), ephemeris.getStep(), ephemeris.size(), maxPositionError,
+                maxPosition, Math.sqrt(sumSquares / checks), maxVelocity,
+                propagatorTime / (1000.0 * checks), interpolatedTime / (1000.0 * checks));
+    }
+
+    /**
+     * Checks whether the cache was built for the given scenario window and step
+     **/
+    public boolean covers(String startTime, String endTime, double step) {
+        return this.startTime.equals(startTime) && this.endTime.equals(endTime) && this.step == step;
+    }
+
+    /**
+     * Checks whether a scenario window can be read from the cache: same end date and step, and a start date on the
+     * cache's sampling grid (any start date if interpolated)
+     **/
+    public boolean contains(String startTime, String endTime, double step) {
+        if (!this.endTime.equals(endTime) || this.step != step) {
+            return false;
+        }
+        double offset = Utils.stamp2AD(startTime).durationFrom(start);
+        return offset >= 0 && (isInterpolated() || offset % step == 0);
+    }
+
+    /**
+     * Checks whether a cache for the given window can be obtained by extending this one
+     **/
+    public boolean canExtendTo(String startTime, String endTime, double step) {
+        return this.startTime.equals(startTime) && this.step == step && Utils.stamp2AD(endTime).durationFrom(end) > 0;
+    }
+
+    /**
+     * Returns true if the states are queried by interpolation instead of being read on the scenario grid
+     **/
+    public boolean isInterpolated() {
+        return maxPositionError > 0;
+    }
+
+    public double getMaxPositionError() {
+        return maxPositionError;
+    }
+
+    public Frame getEarthFrame() {
+        return earthFrame;
+    }
+
+    public int size() {
+        return ephemerides.size();
+    }
+
+    public void clear() {
+        ephemerides.clear();
+    }
+
+}
@@ -0,0 +1,209 @@
+package simulation.structures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of non-negative asset ids stored as a bitset. Only the words between the lowest and the highest id are kept, so
+ * a set holding a single large device id takes one word, while a set of satellites of a constellation takes one word
+ * per 64 satellites. Add, remove and contains are O(1), size is kept up to date, and copies are a single array clone.
+ * Ids are iterated in ascending order.
+ **/
+public class AssetSet implements Iterable<Integer> {
+
+    private static final long[] EMPTY = new long[0];
+
+    private int base = 0;           // index of the first stored word
+    private long[] words = EMPTY;
+    private int size = 0;
+
+    public AssetSet() {
+    }
+
+    /**
+     * @param capacity ids below this value are stored without growing
+     **/
+    public AssetSet(int capacity) {
+        this.words = capacity > 0 ? new long[(capacity + 63) >>> 6] : EMPTY;
+    }
+
+    /**
+     * Returns a copy of another set
+     **/
+    public AssetSet(AssetSet other) {
+        this.base = other.base;
+        this.words = other.words.length == 0 ? EMPTY : other.words.clone();
+        this.size = other.size;
+    }
+
+    public static AssetSet of(Collection<Integer> ids) {
+        AssetSet set = new AssetSet();
+        for (Integer id : ids) {
+            set.add(id);
+        }
+        return set;
+    }
+
+    /**
+     * Adds an id, returns false if it was already present
+     **/
+    public boolean add(int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Asset ids must not be negative: " + id);
+        }
+        int word = id >>> 6;
+        ensureWord(word);
+        long before = words[word - base];
+        words[word - base] = before | (1L << id);
+        if (before == words[word - base]) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes an id, returns false if it was not present
+     **/
+    public boolean remove(int id) {
+        if (!contains(id)) {
+            return false;
+        }
+        words[(id >>> 6) - base] &= ~(1L << id);
+        size--;
+        return true;
+    }
+
+    public boolean contains(int id) {
+        int word = (id >>> 6) - base;
+        return id >= 0 && word >= 0 && word < words.length && (words[word] & (1L << id)) != 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(words, 0);
+        size = 0;
+    }
+
+    /**
+     * Returns the lowest id of the set
+     **/
+    public int first() {
+        for (int w = 0; w < words.length; w++) {
+            if (words[w] != 0) {
+                return ((base + w) << 6) + Long.numberOfTrailingZeros(words[w]);
+            }
+        }
+        throw new NoSuchElementException();
+    }
+
+    /**
+     * Returns the lowest id greater than or equal to from, -1 if there is none
+     **/
+    public int next(int from) {
+        int w = Math.max((from >>> 6) - base, 0);
+        if (w >= words.length) {
+            return -1;
+        }
+        long word = (from >>> 6) - base == w ? words[w] & (-1L << from) : words[w];
+        while (true) {
+            if (word != 0) {
+                return ((base + w) << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == words.length) {
+                return -1;
+            }
+            word = words[w];
+        }
+    }
+
+    /**
+     * Returns the ids as a new ascending list
+     **/
+    public List<Integer> toList() {
+        List<Integer> list = new ArrayList<>(size);
+        for (int id : this) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Iterator<>() {
+            private int next = size == 0 ? -1 : first();
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public Integer next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                int id = next;
+                next = AssetSet.this.next(id + 1);
+                return id;
+            }
+        };
+    }
+
+    private void ensureWord(int word) {
+        if (words.length == 0) {
+            base = word;
+            words = new long[1];
+        } else if (word < base) {
+            long[] grown = new long[words.length + base - word];
+            System.arraycopy(words, 0, grown, base - word, words.length);
+            words = grown;
+            base = word;
+        } else if (word - base >= words.length) {
+            words = Arrays.copyOf(words, Math.max(word - base + 1, 2 * words.length));
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof AssetSet)) {
+            return false;
+        }
+        AssetSet other = (AssetSet) o;
+        if (size != other.size) {
+            return false;
+        }
+        for (int id : this) {
+            if (!other.contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int id : this) {
+            hash = 31 * hash + id;
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return toList().toString();
+    }
+
+}
@@ -0,0 +1,14 @@
+package simulation.structures;
+
+/**
+ * Receives ephemeris samples one at a time, as primitives, so that long ephemerides can be written or aggregated
+ * without materializing one Ephemeris object per sample. Position and velocity are topocentric, time is unix time in
+ * milliseconds.
+ **/
+@FunctionalInterface
+public interface EphemerisSink {
+
+    void accept(long time, double posX, double posY, double posZ, double velX, double velY, double velZ,
+                double range, double dopplerShift);
+
+}
@@ -0,0 +1,201 @@
+package simulation.structures;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Columnar ephemeris store: one primitive column for the time and one per component, instead of one Ephemeris object
+ * per sample. Columns live on the heap as long[] and double[] arrays, or off-heap in direct ByteBuffers, which keeps
+ * long ephemerides out of the garbage collector's way. Samples are appended in time order, as a Simulation produces
+ * them through the EphemerisSink interface.
+ **/
+public class EphemerisTable implements EphemerisSink {
+
+    public static final int POS_X = 0;
+    public static final int POS_Y = 1;
+    public static final int POS_Z = 2;
+    public static final int VEL_X = 3;
+    public static final int VEL_Y = 4;
+    public static final int VEL_Z = 5;
+    public static final int RANGE = 6;
+    public static final int DOPPLER = 7;
+    private static final int COLUMNS = 8;
+
+    private final boolean offHeap;
+    private LongBuffer time;
+    private final DoubleBuffer[] columns = new DoubleBuffer[COLUMNS];
+    private int size = 0;
+
+    public EphemerisTable(int capacity) {
+        this(capacity, false);
+    }
+
+    /**
+     * @param offHeap store the columns in direct buffers outside the Java heap
+     **/
+    public EphemerisTable(int capacity, boolean offHeap) {
+        this.offHeap = offHeap;
+        allocate(Math.max(capacity, 16));
+    }
+
+    private void allocate(int capacity) {
+        LongBuffer newTime = offHeap ? ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer()
+                : LongBuffer.wrap(new long[capacity]);
+        for (int i = 0; i < size; i++) {
+            newTime.put(i, time.get(i));
+        }
+        time = newTime;
+        for (int c = 0; c < COLUMNS; c++) {
+            DoubleBuffer column = offHeap ? ByteBuffer.allocateDirect(capacity * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer()
+                    : DoubleBuffer.wrap(new double[capacity]);
+            for (int i = 0; i < size; i++) {
+                column.put(i, columns[c].get(i));
+            }
+            columns[c] = column;
+        }
+    }
+
+    @Override
+    public void accept(long time, double posX, double posY, double posZ, double velX, double velY, double velZ,
+                       double range, double dopplerShift) {
+        if (size == this.time.capacity()) {
+            allocate(2 * size);
+        }
+        this.time.put(size, time);
+        columns[POS_X].put(size, posX);
+        columns[POS_Y].put(size, posY);
+        columns[POS_Z].put(size, posZ);
+        columns[VEL_X].put(size, velX);
+        columns[VEL_Y].put(size, velY);
+        columns[VEL_Z].put(size, velZ);
+        columns[RANGE].put(size, range);
+        columns[DOPPLER].put(size, dopplerShift);
+        size++;
+    }
+
+    public void add(Ephemeris ephemeris) {
+        accept(ephemeris.getTime(), ephemeris.getPosX(), ephemeris.getPosY(), ephemeris.getPosZ(),
+                ephemeris.getVelX(), ephemeris.getVelY(), ephemeris.getVelZ(), ephemeris.getRange(),
+                ephemeris.getDopplerShift());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public long getTime(int i) {
+        return time.get(i);
+    }
+
+    /**
+     * Returns the value of a column (POS_X ... DOPPLER) at the i-th sample
+     **/
+    public double get(int column, int i) {
+        return columns[column].get(i);
+    }
+
+    public double getRange(int i) {
+        return columns[RANGE].get(i);
+    }
+
+    public double getDopplerShift(int i) {
+        return columns[DOPPLER].get(i);
+    }
+
+    public Ephemeris getEphemeris(int i) {
+        return new Ephemeris(time.get(i), get(POS_X, i), get(POS_Y, i), get(POS_Z, i), get(VEL_X, i), get(VEL_Y, i),
+                get(VEL_Z, i), get(RANGE, i), get(DOPPLER, i));
+    }
+
+    public List<Ephemeris> toList() {
+        List<Ephemeris> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(getEphemeris(i));
+        }
+        return list;
+    }
+
+    /**
+     * Returns the index of the last sample at or before the given unix time in ms, -1 if every sample is later
+     **/
+    public int indexOf(long unixTime) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (time.get(middle) <= unixTime) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Returns a copy of the samples [from, to), with the same storage
+     **/
+    public EphemerisTable slice(int from, int to) {
+        EphemerisTable slice = new EphemerisTable(to - from, offHeap);
+        for (int i = from; i < to; i++) {
+            slice.accept(time.get(i), get(POS_X, i), get(POS_Y, i), get(POS_Z, i), get(VEL_X, i), get(VEL_Y, i),
+                    get(VEL_Z, i), get(RANGE, i), get(DOPPLER, i));
+        }
+        return slice;
+    }
+
+    /**
+     * Returns a copy of the samples between two unix times in ms, both included
+     **/
+    public EphemerisTable sliceBetween(long start, long end) {
+        return slice(indexOf(start - 1) + 1, indexOf(end) + 1);
+    }
+
+    public double min(int column) {
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            min = Math.min(min, columns[column].get(i));
+        }
+        return min;
+    }
+
+    public double max(int column) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, columns[column].get(i));
+        }
+        return max;
+    }
+
+    public double mean(int column) {
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += columns[column].get(i);
+        }
+        return size == 0 ? Double.NaN : sum / size;
+    }
+
+    /**
+     * Returns the index of the sample with the smallest value of a column, -1 if the table is empty
+     **/
+    public int indexOfMin(int column) {
+        int index = -1;
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            if (columns[column].get(i) < min) {
+                min = columns[column].get(i);
+                index = i;
+            }
+        }
+        return index;
+    }
+
+}
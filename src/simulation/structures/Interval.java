@@ -1,6 +1,5 @@
 package simulation.structures;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class Interval {
@@ -9,8 +8,8 @@ public class Interval {
     private long end;
     private long duration;
     private long timeSinceLastContact;
-    private List<Integer> fromAssets = new ArrayList<>();
-    private List<Integer> toAssets = new ArrayList<>();
+    private AssetSet fromAssets = new AssetSet();
+    private AssetSet toAssets = new AssetSet();
     private double metric;
 
     public Interval(long start, long end, Integer from, Integer to) {
@@ -25,8 +24,19 @@ public class Interval {
     public Interval(long start, long end, List<Integer> fromAssets, List<Integer> toAssets) {
         this.start = start;
         this.end = end;
-        this.fromAssets = new ArrayList<>(fromAssets);
-        this.toAssets = new ArrayList<>(toAssets);
+        this.fromAssets = AssetSet.of(fromAssets);
+        this.toAssets = AssetSet.of(toAssets);
+        this.duration = end - start;
+    }
+
+    /**
+     * Creates an interval with snapshots of the given asset sets
+     **/
+    public Interval(long start, long end, AssetSet fromAssets, AssetSet toAssets) {
+        this.start = start;
+        this.end = end;
+        this.fromAssets = new AssetSet(fromAssets);
+        this.toAssets = new AssetSet(toAssets);
         this.duration = end - start;
     }
 
@@ -64,20 +74,34 @@ public class Interval {
         return timeSinceLastContact;
     }
 
+    /**
+     * Returns the origin asset ids as a new ascending list, see getFromSet for the live set
+     **/
     public List<Integer> getFromAssets() {
-        return fromAssets;
+        return fromAssets.toList();
     }
 
+    /**
+     * Returns the destination asset ids as a new ascending list, see getToSet for the live set
+     **/
     public List<Integer> getToAssets() {
+        return toAssets.toList();
+    }
+
+    public AssetSet getFromSet() {
+        return fromAssets;
+    }
+
+    public AssetSet getToSet() {
         return toAssets;
     }
 
     public Integer getFirstFrom() {
-        return fromAssets.get(0);
+        return fromAssets.first();
     }
 
     public Integer getFirstTo() {
-        return toAssets.get(0);
+        return toAssets.first();
     }
 
     public void addFrom(Integer indexFrom) {
@@ -0,0 +1,137 @@
+package simulation.structures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable index of access intervals for time queries. The intervals are sorted by start into primitive arrays,
+ * which are read as an implicit balanced tree: the middle of every range is the node, its halves the subtrees, and
+ * each node keeps the latest end of its subtree. Subtrees ending before a query, or starting after it, are skipped,
+ * so stabbing and window queries visit O(log n + k) nodes for k results instead of scanning the list.
+ * Intervals are closed: an interval overlaps a window if it starts before the window ends and ends after it starts.
+ **/
+public class IntervalIndex {
+
+    private final List<Interval> intervals;
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] maxEnds;
+    private final int[] positions;  // Position of each sorted interval in the list it was built from
+
+    public IntervalIndex(List<Interval> intervals) {
+
+        int n = intervals.size();
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(intervals.get(a).getStart(), intervals.get(b).getStart()));
+
+        this.intervals = new ArrayList<>(n);
+        this.starts = new long[n];
+        this.ends = new long[n];
+        this.maxEnds = new long[n];
+        this.positions = new int[n];
+        for (int i = 0; i < n; i++) {
+            Interval interval = intervals.get(order[i]);
+            this.intervals.add(interval);
+            this.starts[i] = interval.getStart();
+            this.ends[i] = interval.getEnd();
+            this.positions[i] = order[i];
+        }
+        augment(0, n);
+
+    }
+
+    /**
+     * Fills the latest end of the subtree over [from, to) and returns it
+     **/
+    private long augment(int from, int to) {
+        if (from >= to) {
+            return Long.MIN_VALUE;
+        }
+        int node = (from + to) >>> 1;
+        maxEnds[node] = Math.max(ends[node], Math.max(augment(from, node), augment(node + 1, to)));
+        return maxEnds[node];
+    }
+
+    public int size() {
+        return starts.length;
+    }
+
+    /**
+     * Returns the intervals containing an instant, in start order
+     **/
+    public List<Interval> stab(long time) {
+        return overlapping(time, time);
+    }
+
+    /**
+     * Returns the intervals overlapping a window, in start order
+     **/
+    public List<Interval> overlapping(long from, long to) {
+        List<Interval> result = new ArrayList<>();
+        visit(0, starts.length, from, to, i -> result.add(intervals.get(i)));
+        return result;
+    }
+
+    /**
+     * Passes the position, in the list the index was built from, of every interval overlapping a window, in start
+     * order
+     **/
+    public void forEachOverlapping(long from, long to, IntConsumer consumer) {
+        visit(0, starts.length, from, to, i -> consumer.accept(positions[i]));
+    }
+
+    /**
+     * Returns the origin assets of the intervals overlapping a window with at least one destination asset, such as
+     * the devices in contact with a satellite at some point of the window for device point of view accesses
+     **/
+    public AssetSet getAssetsInContact(long from, long to) {
+        AssetSet assets = new AssetSet();
+        visit(0, starts.length, from, to, i -> {
+            Interval interval = intervals.get(i);
+            if (!interval.getToSet().isEmpty()) {
+                for (int asset : interval.getFromSet()) {
+                    assets.add(asset);
+                }
+            }
+        });
+        return assets;
+    }
+
+    /**
+     * Returns the given assets that are not in contact at any point of a window
+     **/
+    public AssetSet getUncoveredAssets(Collection<Integer> assets, long from, long to) {
+        AssetSet inContact = getAssetsInContact(from, to);
+        AssetSet uncovered = new AssetSet();
+        for (int asset : assets) {
+            if (!inContact.contains(asset)) {
+                uncovered.add(asset);
+            }
+        }
+        return uncovered;
+    }
+
+    private void visit(int lo, int hi, long from, long to, IntConsumer consumer) {
+        if (lo >= hi) {
+            return;
+        }
+        int node = (lo + hi) >>> 1;
+        if (maxEnds[node] < from) {     // Everything below ends before the window
+            return;
+        }
+        visit(lo, node, from, to, consumer);
+        if (starts[node] <= to) {       // Otherwise the node and its right subtree start after the window
+            if (ends[node] >= from) {
+                consumer.accept(node);
+            }
+            visit(node + 1, hi, from, to, consumer);
+        }
+    }
+
+}
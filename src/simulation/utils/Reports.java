@@ -2,15 +2,21 @@ package simulation.utils;
 
 import org.orekit.propagation.analytical.tle.TLE;
 import simulation.Simulation;
+import simulation.propagation.InterpolationReport;
 import simulation.assets.objects.Device;
 import simulation.assets.objects.Satellite;
 import simulation.structures.Ephemeris;
+import simulation.structures.EphemerisSink;
+import simulation.structures.EphemerisTable;
 import simulation.structures.Event;
 import simulation.structures.Interval;
 import simulation.structures.Solution;
 
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.List;
 
 public class Reports {
@@ -149,6 +155,60 @@ public class Reports {
         }
     }
 
+    public static void saveEphemerisCSV(EphemerisTable table, String path) {
+        try (var writer = new BufferedWriter(new FileWriter(path))) {
+            for (int i = 0; i < table.size(); i++) {
+                writer.write(table.getTime(i) + "," + table.get(EphemerisTable.POS_X, i) + ","
+                        + table.get(EphemerisTable.POS_Y, i) + "," + table.get(EphemerisTable.POS_Z, i) + ","
+                        + table.getRange(i) + "," + table.getDopplerShift(i) + '\n');
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Streams the scenario ephemeris of the simulation's current pair to a csv file, in the saveEphemerisCSV format,
+     * without keeping the samples in memory
+     */
+    public static void saveEphemerisCSV(Simulation simulation, String path) {
+        try (var writer = new BufferedWriter(new FileWriter(path))) {
+            simulation.computePVD(ephemerisCSVSink(writer));
+        } catch (IOException | UncheckedIOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns a sink writing every sample as a saveEphemerisCSV line
+     */
+    public static EphemerisSink ephemerisCSVSink(Writer writer) {
+        return (time, posX, posY, posZ, velX, velY, velZ, range, dopplerShift) -> {
+            try {
+                writer.write(time + "," + posX + "," + posY + "," + posZ + "," + range + "," + dopplerShift + '\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    /**
+     * Prints the validation of interpolated ephemerides against full propagation
+     */
+    public static void printInterpolationReport(List<InterpolationReport> reports) {
+
+        System.out.println("Sat" + '\t' + "Step[s]" + '\t' + "Bound[m]" + '\t' + "MaxErr[m]" + '\t' + "RmsErr[m]"
+                + '\t' + "MaxVelErr[m/s]" + '\t' + "Speedup");
+
+        for (InterpolationReport report : reports) {
+            System.out.println(report.getSatelliteId() + "\t" + report.getSampleStep() + '\t' + report.getErrorBound()
+                    + '\t' + report.getMaxPositionError() + '\t' + report.getRmsPositionError()
+                    + '\t' + report.getMaxVelocityError() + '\t' + report.getSpeedup()
+                    + (report.isWithinBound() ? "" : "\tOUT OF BOUND"));
+        }
+
+    }
+
     /**
      * Prints the elements of each satellite in a Satellite List
      */
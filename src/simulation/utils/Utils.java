@@ -22,6 +22,8 @@ public class Utils {
     public static final double EARTH_RADIUS = 6378135;    // Radius Earth [m]; WGS-84 (semi-major axis, a) (Equatorial Radius)
     public static final double ECCENTRICITY = 8.1819190842622e-2;    // Ellipsoid constants: eccentricity; WGS84
     public static final double MU = 3.986004418e+14; // Gravitation coefficient
+    public static final double EARTH_ROTATION_RATE = 7.292115e-5;  // [rad/s]
+    public static final double FOOTPRINT_MARGIN = Math.toRadians(1.0);   // [rad] Covers oblateness and geodetic latitudes
 
     private Utils() {
 
@@ -156,6 +158,29 @@ public class Utils {
 
     }
 
+    /**
+     * Gets the maximum Earth Central Angle (half of the footprint) in degrees, for an orbit at its apogee and a
+     * given visibility threshold in degrees
+     *
+     * @return double
+     */
+    public static double getLambdaMax(double semiMajorAxis, double eccentricity, double th) {
+        double hMax = semiMajorAxis * (1 + eccentricity) - EARTH_RADIUS;
+        double etaMax = Math.asin((EARTH_RADIUS * Math.cos(Math.toRadians(th))) / (EARTH_RADIUS + hMax));
+        return 90 - th - Math.toDegrees(etaMax);
+    }
+
+    /**
+     * Gets an upper bound of the angular rate of the sub-satellite point over the rotating Earth in rad/s: the
+     * angular rate at perigee plus the Earth rotation rate
+     *
+     * @return double
+     */
+    public static double getMaxGroundTrackRate(double meanMotion, double eccentricity) {
+        return meanMotion * Math.pow(1 + eccentricity, 2) / Math.pow(1 - eccentricity * eccentricity, 1.5)
+                + EARTH_ROTATION_RATE;
+    }
+
     /**
      * Transforms an asset's Longitude, Latitude and Height to ECEF coordinates
      *
@@ -336,6 +361,18 @@ public class Utils {
                 elements.getDragCoefficient());
     }
 
+    /**
+     * Returns the TLE of a Satellite Object, built from its orbital elements when no TLE lines are set
+     *
+     * @return TLE
+     */
+    public static TLE satelliteTLE(Satellite satellite) {
+        if (satellite.getTLE1().isEmpty() || satellite.getTLE2().isEmpty()) {
+            return satellite2tle(satellite);
+        }
+        return new TLE(satellite.getTLE1(), satellite.getTLE2());
+    }
+
     /**
      * Transforms an array of elements in a,e,i,R.A.A.N.,p.a.,v order into a TLE Object
      *
@@ -386,21 +423,33 @@ public class Utils {
      *
      * @return int
      */
-    public int getAccessRegions(Asset asset, Satellite satellite, double th) {
-
-        double lat = asset.getLatRad();
-        double inc = satellite.getElements().getInclinationRads();
+    public static int getAccessRegions(Asset asset, Satellite satellite, double th) {
+        return getAccessRegions(asset, satellite, th, 0);
+    }
 
-        int regions = 0;
+    /**
+     * This method returns the Number of access regions for given Device-Satellite pair. The margin [rad] widens the
+     * Earth central angle of the footprint, so that a pair is only reported without access regions (0) when it can
+     * never be in view despite the Earth's oblateness and the perturbations ignored by the spherical model
+     *
+     * @return int
+     */
+    public static int getAccessRegions(Asset asset, Satellite satellite, double th, double margin) {
 
-        if (lat < 0) lat = Math.abs(lat);
+        OrbitalElements elements = satellite.getElements();
+        if (elements == null) {
+            elements = tle2elements(satellite.getTLE1(), satellite.getTLE2());
+        }
 
-        double Hmax = satellite.getElement("semmajaxis") * (1 + satellite.getElement("eccentricity")) ; 
+        double lat = Math.abs(asset.getLatRad());
+        double inc = elements.getInclinationRads();
+        if (inc > Math.PI / 2) {    // Retrograde orbits reach the same latitude as their supplement
+            inc = Math.PI - inc;
+        }
 
-        double etaMax = Math.asin((EARTH_RADIUS * Math.cos(Math.toRadians(th))) / (EARTH_RADIUS + Hmax));
-        double lambdaMax = 90 - th - Math.toDegrees(etaMax);
+        int regions = 0;
 
-        lambdaMax = Math.toRadians(lambdaMax);
+        double lambdaMax = Math.toRadians(getLambdaMax(elements.getSemiMajorAxis(), elements.getEccentricity(), th)) + margin;
 
         if (lat >= (lambdaMax + inc)) {
             regions = 0;